@@ -0,0 +1,621 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    AbstractInPlacePST.java                                            *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   Construction and queries of the in-place priority search tree      *
+*          of De, Maheshwari, Nandy, Smid, written against base 1 heap        *
+*          indices only.  Subclasses decide how the coordinates of the        *
+*          node at a given index are stored: InPlacePST keeps PSTPoints,      *
+*          PrimitiveInPlacePST two double arrays.                             *
+*                                                                             *
+*          Routing relies on the layout produced by buildLevel: the nodes     *
+*          of each level are ordered by x, and the subtree of a node lies     *
+*          entirely between its left and right neighbours on that level.      *
+*          As with the other trees, points are assumed to have distinct       *
+*          coordinates.                                                       *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+import java.util.stream.*;
+
+public abstract class AbstractInPlacePST implements PrioritySearchTree {
+/******************************************************************************
+* Storage                                                                     *
+******************************************************************************/
+    // number of points in the tree
+    public abstract int size();
+    // Note: all take array indices of base 1
+    protected abstract double getX(int index);
+    protected abstract double getY(int index);
+    protected abstract void swap(int i, int j);
+
+    // Hands out the point stored at index.  Subclasses which do not keep
+    // PSTPoint objects allocate a fresh one here, and only here.
+    protected PSTPoint getPoint(int index) {
+	return new PSTPoint(getX(index),getY(index));
+    }
+
+    // Sorts the points between beginIndex and endIndex (inclusive) by
+    // x-coordinate.  Subclasses with direct access to their storage
+    // should override this with something faster.
+    protected void sortByX(int beginIndex, int endIndex) {
+	int n = 1 + endIndex - beginIndex;
+	for(int v = n/2; v >= 1; v--)
+	    downHeap(v,beginIndex,endIndex);
+	while(endIndex > beginIndex) {
+	    swap(beginIndex,endIndex);
+	    endIndex--;
+	    downHeap(1,beginIndex,endIndex);
+	}
+    }
+    // v is the base 1 offset of the heap node within [beginIndex,endIndex]
+    private void downHeap(int v, int beginIndex, int endIndex) {
+	int offset = beginIndex - 1;
+	int w = 2*v;
+	while(offset + w <= endIndex) {
+	    if(offset + w+1 <= endIndex &&
+	       getX(offset + w+1) > getX(offset + w))
+		w++;
+	    if(!(getX(offset + w) > getX(offset + v)))
+		return;
+	    swap(offset + w,offset + v);
+	    v = w;
+	    w = 2*v;
+	}
+    }
+
+/******************************************************************************
+* Construction                                                                *
+******************************************************************************/
+    // Arranges the points already in storage into an in-place PST.
+    protected void build() {
+	int n = size();
+	if(n < 1) return;
+	sortByX(1,n);
+	int h = level(n);
+	for(int i = 0; i <= h-1; i++)
+	    buildLevel(i);
+    }
+
+    private void buildLevel(int i) {
+	// number of nodes
+	int n = size();
+	Ranges ranges = new Ranges(i,n);
+	// everything past this level is right of s, except what gets
+	// swapped out of it
+	double s = getX(powerOf2(i+1));
+
+	// the j-th node of the level is the root of the subtree built from
+	// range j: bring up the highest point of the range
+	for(int j = 0; j < powerOf2(i); j++)
+	    swap(indexOfMaxY(ranges.begin(j),ranges.end(j)),powerOf2(i)+j);
+	// Finally, sort all points past the current level.  They were sorted
+	// before this level was filled, and the only ones out of order now
+	// are those swapped out of the level, i.e. those left of s.  Move
+	// them to the front and sort just them: O(n + 2^i log n).
+	int zeroes = zeroesFirst(powerOf2(i+1),n,s);
+	sortByX(powerOf2(i+1),powerOf2(i+1)+zeroes-1);
+    }
+    // Moves the points with x < s between beginIndex and endIndex
+    // (inclusive) to the front, keeping the others in order.  Returns
+    // how many were moved.  See Partition.zeroesFirst.
+    protected int zeroesFirst(int beginIndex, int endIndex, double s) {
+	int firstOne = endIndex+1;
+	for(int i = endIndex; i >= beginIndex; i--)
+	    if(!(getX(i) < s))
+		swap(i,--firstOne);
+	return firstOne - beginIndex;
+    }
+    // The first one if there is a tie
+    protected int indexOfMaxY(int beginIndex, int endIndex) {
+	int indexOfMaxY = beginIndex;
+	for(int index = beginIndex+1; index <= endIndex; index++)
+	    if(getY(index) > getY(indexOfMaxY))
+		indexOfMaxY = index;
+	return indexOfMaxY;
+    }
+    // The ranges from which buildLevel builds the subtrees of the nodes on
+    // level i, numbered from 0.  Each starts out sorted by x.
+    protected static class Ranges {
+	final int first, k, k1, k2, k3;
+	Ranges(int i, int n) {
+	    // height of tree
+	    int h = level(n);
+	    // number of nodes filled in the last level
+	    int A = n - (powerOf2(h) - 1);
+	    first = powerOf2(i);
+	    // the first k nodes are roots of subtrees of size k1
+	    k = A/powerOf2(h-i);
+	    k1 = powerOf2(h+1-i) - 1;
+	    // the (k+1)-st node is the root of subtree of size k2
+	    k2 = powerOf2(h-i) - 1 + A - k*powerOf2(h-i);
+	    // the remaining nodes are roots of subtrees of size k3
+	    k3 = powerOf2(h-i) - 1;
+	}
+	int begin(int j) { // base 1
+	    if(j <= k) return first + j*k1;
+	    return first + k*k1 + k2 + (j-k-1)*k3;
+	}
+	int end(int j) { // base 1, inclusive
+	    return begin(j+1) - 1;
+	}
+    }
+
+/******************************************************************************
+* Query                                                                       *
+******************************************************************************/
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: leftMostNE                                                   *
+*                                                                             *
+* PURPOSE:       Determine the point with minimum x-coordinate among          *
+*                all points {p ∈ P | xmin ≤ p.x ∧ ymin ≤ p.y}                 *
+*                                                                             *
+* RETURN:        The PSTPoint with minimum x-coordinate within given          *
+*                boundaries, or (+∞,+∞) if there is none.                     *
+*                                                                             *
+******************************************************************************/
+    public PSTPoint leftMostNE(double xmin, double ymin) {
+	int index = leftMostIndexNE(xmin,ymin);
+	if(index == 0) return PSTPoint.NONE_LEFTMOST;
+	return getPoint(index);
+    }
+    // Returns 0 if no point qualifies.
+    public int leftMostIndexNE(double xmin, double ymin) {
+	if(size() < 1) return 0;
+	return leftMost3Sided(1,xmin,Double.POSITIVE_INFINITY,ymin,0);
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: highestNE                                                    *
+*                                                                             *
+* PURPOSE:       Determine the point with maximum y-coordinate among          *
+*                all points {p ∈ P | xmin ≤ p.x ∧ ymin ≤ p.y}                 *
+*                                                                             *
+* RETURN:        The PSTPoint with maximum y-coordinate within given          *
+*                boundaries, or (+∞,-∞) if there is none.                     *
+*                                                                             *
+******************************************************************************/
+    public PSTPoint highestNE(double xmin, double ymin) {
+	return highest3Sided(xmin,Double.POSITIVE_INFINITY,ymin);
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: highest3Sided                                                *
+*                                                                             *
+* PURPOSE:       Determine the point with maximum y-coordinate among          *
+*                all points {p ∈ P | xmin ≤ p.x ≤ xmax ∧ ymin ≤ p.y}          *
+*                                                                             *
+* RETURN:        The PSTPoint with maximum y-coordinate within given          *
+*                boundaries, or (+∞,-∞) if there is none.                     *
+*                                                                             *
+* NOTES:         At most two nodes per level lie outside [xmin,xmax] while    *
+*                their subtree still straddles it, so O(log n) nodes are      *
+*                visited.                                                     *
+*                                                                             *
+******************************************************************************/
+    public PSTPoint highest3Sided(double xmin, double xmax, double ymin) {
+	int index = highestIndex3Sided(xmin,xmax,ymin);
+	if(index == 0) return PSTPoint.NONE_HIGHEST;
+	return getPoint(index);
+    }
+    // Returns 0 if no point qualifies.
+    public int highestIndex3Sided(double xmin, double xmax, double ymin) {
+	if(size() < 1) return 0;
+	return highest3Sided(1,xmin,xmax,ymin,0);
+    }
+    private int highest3Sided(int index, double xmin, double xmax,
+			      double ymin, int best) {
+	double y = getY(index);
+	// nothing in this subtree is higher than its root
+	if(y < ymin || (best != 0 && y <= getY(best))) return best;
+	if(!mayIntersect(index,xmin,xmax)) return best;
+	double x = getX(index);
+	if(xmin <= x && x <= xmax) return index;
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= size())
+	    best = highest3Sided(indexL,xmin,xmax,ymin,best);
+	if(indexL+1 <= size())
+	    best = highest3Sided(indexL+1,xmin,xmax,ymin,best);
+	return best;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: enumerate3Sided                                              *
+*                                                                             *
+* PURPOSE:       Returns a list of points within a query region               *
+*                bounded on 3 sides (a minimum and maximum x, and a           *
+*                minimum y), but no maximum y value.                          *
+*                                                                             *
+* RETURN:        List<PSTPoint> of all points within boundaries.              *
+*                                                                             *
+* NOTES:         Visits O(log n + k) nodes, where k is the size of the        *
+*                output.                                                      *
+*                                                                             *
+******************************************************************************/
+    public List<PSTPoint> enumerate3Sided(double xmin, double xmax, double ymin) {
+	IndexList indices = enumerate3SidedIndices(xmin,xmax,ymin);
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>(indices.size());
+	for(int i = 0; i < indices.size(); i++)
+	    points.add(getPoint(indices.get(i)));
+	return points;
+    }
+    // Collects the base 1 indices of all points within boundaries
+    protected IndexList enumerate3SidedIndices(double xmin, double xmax,
+					       double ymin) {
+	IndexList indices = new IndexList();
+	if(size() > 0)
+	    enumerate3Sided(1,xmin,xmax,ymin,indices);
+	return indices;
+    }
+    // Adds the indices of the points of the query in the subtree rooted
+    // at index to indices, in preorder
+    protected void enumerate3Sided(int index, double xmin, double xmax,
+				   double ymin, IndexList indices) {
+	if(getY(index) < ymin) return;
+	if(!mayIntersect(index,xmin,xmax)) return;
+	double x = getX(index);
+	if(xmin <= x && x <= xmax)
+	    indices.add(index);
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= size())
+	    enumerate3Sided(indexL,xmin,xmax,ymin,indices);
+	if(indexL+1 <= size())
+	    enumerate3Sided(indexL+1,xmin,xmax,ymin,indices);
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: enumerate3Sided                                              *
+*                                                                             *
+* PURPOSE:       Writes the points of the query held by cursor into xs        *
+*                and ys, until they are full or the points run out, and       *
+*                leaves cursor where it stopped.                              *
+*                                                                             *
+*                The nodes are walked in preorder without a stack, since      *
+*                the parent of a node is found from its index, so the walk    *
+*                is fully described by the last node visited.  Nothing is     *
+*                allocated.                                                   *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   EnumerationCursor/cursor                                     *
+*   Description: The query, and where to resume it.                           *
+*                                                                             *
+*   Type/Name:   double[]/xs, double[]/ys                                     *
+*   Description: Receive the coordinates of the points found.                 *
+*                                                                             *
+* RETURN:        The number of points written.  While cursor.hasMore(),       *
+*                calling again writes the next points.                        *
+*                                                                             *
+******************************************************************************/
+    public int enumerate3Sided(EnumerationCursor cursor,
+			       double[] xs, double[] ys) {
+	int capacity = Math.min(xs.length,ys.length);
+	int count = 0;
+	int index = cursor.index;
+	while(index >= 0 && count < capacity) {
+	    index = next3Sided(index,cursor.xmin,cursor.xmax,cursor.ymin);
+	    if(index < 0) break;
+	    double x = getX(index);
+	    if(cursor.xmin <= x && x <= cursor.xmax) {
+		xs[count] = x;
+		ys[count] = getY(index);
+		count++;
+	    }
+	}
+	cursor.index = index;
+	return count;
+    }
+    // The node after index in a preorder walk of the nodes whose subtrees
+    // may hold points of the query, or -1 after the last.  Index 0 starts
+    // the walk.
+    protected int next3Sided(int index, double xmin, double xmax, double ymin) {
+	int n = size();
+	if(index == 0)
+	    return n > 0 && admits(1,xmin,xmax,ymin) ? 1 : -1;
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= n && admits(indexL,xmin,xmax,ymin))
+	    return indexL;
+	if(indexL+1 <= n && admits(indexL+1,xmin,xmax,ymin))
+	    return indexL+1;
+	// climb until a right sibling remains to be walked
+	while(index > 1) {
+	    if(index % 2 == 0 && index+1 <= n &&
+	       admits(index+1,xmin,xmax,ymin))
+		return index+1;
+	    index = indexOfParent(index);
+	}
+	return -1;
+    }
+    protected boolean admits(int index, double xmin, double xmax, double ymin) {
+	return getY(index) >= ymin && mayIntersect(index,xmin,xmax);
+    }
+
+/******************************************************************************
+* Lazy enumeration                                                            *
+*                                                                             *
+* iterate3Sided returns the points of enumerate3Sided one at a time,          *
+* driving the cursor walk above one step per point, so a caller which         *
+* stops early never visits the rest of the tree.  stream3Sided wraps the      *
+* same walk as a sequential Stream.                                           *
+******************************************************************************/
+    public Iterator<PSTPoint> iterate3Sided(double xmin, double xmax,
+					   double ymin) {
+	return new Iterator3Sided(xmin,xmax,ymin);
+    }
+    public Stream<PSTPoint> stream3Sided(double xmin, double xmax, double ymin) {
+	return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+	    iterate3Sided(xmin,xmax,ymin),
+	    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+				    false);
+    }
+    private class Iterator3Sided implements Iterator<PSTPoint> {
+	private final EnumerationCursor cursor;
+	// the node to be returned next, or 0 if not yet found
+	private int next;
+	Iterator3Sided(double xmin, double xmax, double ymin) {
+	    cursor = new EnumerationCursor(xmin,xmax,ymin);
+	}
+	public boolean hasNext() {
+	    while(next == 0 && cursor.index >= 0) {
+		int index = next3Sided(cursor.index,cursor.xmin,cursor.xmax,
+				       cursor.ymin);
+		cursor.index = index;
+		if(index < 0) break;
+		double x = getX(index);
+		if(cursor.xmin <= x && x <= cursor.xmax)
+		    next = index;
+	    }
+	    return next != 0;
+	}
+	public PSTPoint next() {
+	    if(!hasNext()) throw new NoSuchElementException();
+	    PSTPoint p = getPoint(next);
+	    next = 0;
+	    return p;
+	}
+    }
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: topK3Sided                                                   *
+*                                                                             *
+* PURPOSE:       Returns the k highest points within a query region           *
+*                bounded on 3 sides, highest first.                           *
+*                                                                             *
+*                Every node is higher than the nodes below it, so taking      *
+*                nodes from a heap keyed on y, and adding the children of     *
+*                each node taken, yields them in decreasing y.  Only nodes    *
+*                whose subtree may hold points of the query are added.        *
+*                Those outside [xmin,xmax] lie along the two boundaries of    *
+*                the query, so O(log n + k) nodes are taken, in               *
+*                O(log n + k log k) time.  iterate3SidedByY does the same     *
+*                lazily, for when k is not known in advance.                  *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   double/xmin                                                  *
+*   Description: Minimum x value.                                             *
+*                                                                             *
+*   Type/Name:   double/xmax                                                  *
+*   Description: Maximum x value.                                             *
+*                                                                             *
+*   Type/Name:   double/ymin                                                  *
+*   Description: Minimum y value.                                             *
+*                                                                             *
+*   Type/Name:   int/k                                                        *
+*   Description: Most points to return.                                       *
+*                                                                             *
+* RETURN:        List<PSTPoint> of at most k points, in decreasing y.         *
+*                                                                             *
+******************************************************************************/
+    public List<PSTPoint> topK3Sided(double xmin, double xmax, double ymin,
+				     int k) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>(Math.min(k,16));
+	Iterator<PSTPoint> descending = iterate3SidedByY(xmin,xmax,ymin);
+	while(points.size() < k && descending.hasNext())
+	    points.add(descending.next());
+	return points;
+    }
+    public Iterator<PSTPoint> iterate3SidedByY(double xmin, double xmax,
+					      double ymin) {
+	return new Descending3Sided(xmin,xmax,ymin);
+    }
+    private class Descending3Sided implements Iterator<PSTPoint> {
+	private final double xmin, xmax, ymin;
+	// nodes whose subtrees are still to be walked, keyed on y
+	private final IndexHeap heap = new IndexHeap();
+	// the node to be returned next, or 0 if not yet found
+	private int next;
+	Descending3Sided(double xmin, double xmax, double ymin) {
+	    this.xmin = xmin;
+	    this.xmax = xmax;
+	    this.ymin = ymin;
+	    add(1);
+	}
+	private void add(int index) {
+	    if(index <= size() && admits(index,xmin,xmax,ymin))
+		heap.add(index,getY(index));
+	}
+	public boolean hasNext() {
+	    while(next == 0 && heap.size() > 0) {
+		int index = heap.removeMax();
+		add(indexOfLeftChild(index));
+		add(indexOfRightChild(index));
+		double x = getX(index);
+		if(xmin <= x && x <= xmax)
+		    next = index;
+	    }
+	    return next != 0;
+	}
+	public PSTPoint next() {
+	    if(!hasNext()) throw new NoSuchElementException();
+	    PSTPoint p = getPoint(next);
+	    next = 0;
+	    return p;
+	}
+    }
+    // The subtree rooted at index lies between the x-coordinates of the
+    // neighbours of index on the same level, so it can only contain
+    // points in [xmin,xmax] if those neighbours do not exclude it.
+    protected boolean mayIntersect(int index, double xmin, double xmax) {
+	int first = Integer.highestOneBit(index);
+	if(index > first && getX(index-1) > xmax)
+	    return false;
+	if(index+1 < 2*first && index+1 <= size() && getX(index+1) < xmin)
+	    return false;
+	return true;
+    }
+
+/******************************************************************************
+* Scalar queries                                                              *
+*                                                                             *
+* Each returns the base 1 index of the point answering the query, or 0 if     *
+* there is none, and allocates nothing: no PSTPoint, no sentinel and no       *
+* exception.  xAt and yAt read the coordinates at such an index.              *
+* leftMostIndexNE and highestIndex3Sided are above.                           *
+******************************************************************************/
+    public int leftMostIndex3Sided(double xmin, double xmax, double ymin) {
+	return size() < 1 ? 0 : leftMost3Sided(1,xmin,xmax,ymin,0);
+    }
+    public int rightMostIndex3Sided(double xmin, double xmax, double ymin) {
+	return size() < 1 ? 0 : rightMost3Sided(1,xmin,xmax,ymin,0);
+    }
+    public int lowestIndex3Sided(double xmin, double xmax, double ymin) {
+	return size() < 1 ? 0 : lowest3Sided(1,xmin,xmax,ymin,0);
+    }
+    public double xAt(int index) { // base 1
+	return getX(index);
+    }
+    public double yAt(int index) { // base 1
+	return getY(index);
+    }
+
+/******************************************************************************
+* PrioritySearchTree                                                          *
+******************************************************************************/
+    public double maxYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int index = highestIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return getY(index);
+    }
+    public double minXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int index = leftMostIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return getX(index);
+    }
+    public double maxXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int index = rightMostIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return getX(index);
+    }
+    public double minYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int index = lowestIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return getY(index);
+    }
+
+/******************************************************************************
+* The leftmost point of a 3-sided query is found depth first, left child      *
+* before right.  Every point below a node lies right of the node's left       *
+* neighbour on its level, so once a point is found no further left than       *
+* that neighbour, the node is skipped.  With highest3Sided's pruning on       *
+* y and on the neighbours this takes O(log n) nodes: along each boundary of   *
+* the query, the first subtree inside it holding a point high enough ends     *
+* the search.  The rightmost point is found the same way, mirrored.           *
+*                                                                             *
+* Heap order gives no bound from below on y, so the lowest point must look    *
+* at every point of the query: O(log n + k) nodes for k points.               *
+******************************************************************************/
+    // Returns the leftmost point of the query in the subtree rooted at
+    // index if it is left of best, and best otherwise (0 for none).
+    private int leftMost3Sided(int index, double xmin, double xmax,
+			       double ymin, int best) {
+	if(!admits(index,xmin,xmax,ymin)) return best;
+	if(best != 0 && index > Integer.highestOneBit(index) &&
+	   getX(index-1) >= getX(best))
+	    return best;
+	double x = getX(index);
+	if(xmin <= x && x <= xmax && (best == 0 || x < getX(best)))
+	    best = index;
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= size())
+	    best = leftMost3Sided(indexL,xmin,xmax,ymin,best);
+	if(indexL+1 <= size())
+	    best = leftMost3Sided(indexL+1,xmin,xmax,ymin,best);
+	return best;
+    }
+    private int rightMost3Sided(int index, double xmin, double xmax,
+				double ymin, int best) {
+	if(!admits(index,xmin,xmax,ymin)) return best;
+	if(best != 0 && index+1 < 2*Integer.highestOneBit(index) &&
+	   index+1 <= size() && getX(index+1) <= getX(best))
+	    return best;
+	double x = getX(index);
+	if(xmin <= x && x <= xmax && (best == 0 || x > getX(best)))
+	    best = index;
+	int indexL = indexOfLeftChild(index);
+	if(indexL+1 <= size())
+	    best = rightMost3Sided(indexL+1,xmin,xmax,ymin,best);
+	if(indexL <= size())
+	    best = rightMost3Sided(indexL,xmin,xmax,ymin,best);
+	return best;
+    }
+    private int lowest3Sided(int index, double xmin, double xmax,
+			     double ymin, int best) {
+	if(!admits(index,xmin,xmax,ymin)) return best;
+	double x = getX(index);
+	if(xmin <= x && x <= xmax && (best == 0 || getY(index) < getY(best)))
+	    best = index;
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= size())
+	    best = lowest3Sided(indexL,xmin,xmax,ymin,best);
+	if(indexL+1 <= size())
+	    best = lowest3Sided(indexL+1,xmin,xmax,ymin,best);
+	return best;
+    }
+
+/******************************************************************************
+* Utility                                                                     *
+******************************************************************************/
+    protected static int powerOf2(int x) {
+	return 1 << x;
+    }
+    protected boolean isLeaf(int index) { // base 1
+	return numberOfChildren(index) == 0;
+    }
+    protected int numberOfChildren(int index) { // base 1
+	if(indexOfLeftChild(index) > size()) return 0;
+	if(indexOfRightChild(index) > size()) return 1;
+	return 2;
+    }
+    protected static int indexOfParent(int index) { // base 1
+	return index/2;
+    }
+    protected static int indexOfLeftChild(int index) { // base 1
+	return (2*index);
+    }
+    protected static int indexOfRightChild(int index) { // base 1
+	return (2*index)+1;
+    }
+    // floor(log2(index)), exact for every positive int
+    protected static int level(int index) {
+	return 31 - Integer.numberOfLeadingZeros(index);
+    }
+    public void printArray() {
+	for(int i = 1; i <= size(); i++) System.out.print(getPoint(i) + " ");
+	System.out.println();
+    }
+}
@@ -20,30 +20,83 @@
 *                                                                             *
 ******************************************************************************/
 
-import java.awt.geom.*;
 import java.util.*;
+import java.util.stream.*;
+import java.util.concurrent.*;
 
 public class ArrayPST implements PrioritySearchTree {
-    ArrayPSTNode[] heap;
+    // The tree is complete: node i (base 0) has children 2i+1 and 2i+2,
+    // and exactly the indices below n are in use.
+    double[] xs, ys;
+    // splits[i] is the largest x in the left subtree of node i
+    double[] splits;
+    // ids[i] belongs to node i, or null if the points have no ids
+    long[] ids;
+    int n;
+    // default size of the smallest subtree built as a task of its own
+    static final int PARALLEL_CUTOFF = 1 << 13;
 
 /******************************************************************************
-* The worst case for space is when there are 2^m nodes, for some m.           *
-* In which case, O(2^(logn) - 1) extra space is allocated.                    *
+* Every level but the last is full and the last is filled from the left,      *
+* so no space is wasted.                                                      *
 ******************************************************************************/
     public ArrayPST(ArrayList<PSTPoint> points) {
-	if(points == null) return;
-	Collections.sort(points); // Sort by y-coordinate in decreasing order
-	this.heap = new ArrayPSTNode[heapSize(treeHeight(points.size()))];
-	buildTree(0,points);
+	this(points,null);
+    }
+    // ids[i] is the id of points.get(i)
+    public ArrayPST(ArrayList<PSTPoint> points, long[] ids) {
+	this(points,ids,null,0);
+    }
+    public ArrayPST(ArrayList<PSTPoint> points, long[] ids, ForkJoinPool pool) {
+	this(points,ids,pool,PARALLEL_CUTOFF);
+    }
+    // Builds on the given pool, or sequentially if pool is null.  The two
+    // subtrees of any subtree of at least cutoff points are built
+    // concurrently.  The tree built is the same.
+    public ArrayPST(ArrayList<PSTPoint> points, long[] ids, ForkJoinPool pool,
+		    int cutoff) {
+	if(points == null) points = new ArrayList<PSTPoint>();
+	if(ids != null && ids.length != points.size())
+	    throw new IllegalArgumentException("points and ids differ in length");
+	this.n = points.size();
+	this.xs = new double[n];
+	this.ys = new double[n];
+	this.splits = new double[n];
+	if(ids != null)
+	    this.ids = new long[n];
+	// sort a copy by x, then build from the sorted coordinates
+	PSTPoint[] sorted = points.toArray(new PSTPoint[n]);
+	long[] sortedIds = ids == null ? null : ids.clone();
+	if(pool == null)
+	    Sort.heapSort(sorted,sortedIds,0,n-1);
+	else
+	    Sort.parallelSort(sorted,sortedIds,0,n-1,pool,cutoff);
+	double[] sortedX = new double[n], sortedY = new double[n];
+	for(int i = 0; i < n; i++) {
+	    sortedX[i] = sorted[i].getX();
+	    sortedY[i] = sorted[i].getY();
+	}
+	if(pool == null)
+	    buildTree(0,sortedX,sortedY,sortedIds,0,n,Integer.MAX_VALUE);
+	else
+	    pool.invoke(new Build(0,sortedX,sortedY,sortedIds,0,n,cutoff));
     }
 /******************************************************************************
-* Given a root index and a list of valid points P ordered by                  *
-* y-coordinate in decreasing order, determines a median which bisects         *
-* the remaining points, then builds:                                          *
+* Given a root index and the points P in [lo,hi) of the x-sorted arrays,      *
+* builds:                                                                     *
 *                                                                             *
-*   root: point with lowest y-value                                           *
-*   left child:  {p ∈ (P - root) | p.x <= medianX}                            *
-*   right child: {p ∈ (P - root) | p.x >  medianX}                            *
+*   root: point with highest y-value                                          *
+*   left child:  the leftmost points of P - root, as many as the left         *
+*                subtree of a complete tree of |P| nodes holds                *
+*   right child: the rest of P - root                                         *
+*                                                                             *
+* The largest x in the left child is kept as the root's split key, so         *
+* queries can decide which children to visit without looking into them.       *
+* Splitting by rank rather than by value is what keeps the tree               *
+* complete.  The root is taken out by shifting the points to its left         *
+* over by one, so [lo+1,hi) stays sorted; the build is O(n log n).  The       *
+* children use disjoint sub-ranges of the same arrays, so they can be         *
+* built concurrently.                                                         *
 *                                                                             *
 * Note: points are also assumed to have distinct coordinates, i.e. no         *
 *       two points have the same x coordinate and no two points have          *
@@ -56,30 +109,58 @@ public class ArrayPST implements PrioritySearchTree {
 *       Algorithms, de Berg et al.  Section 5.5.                              *
 *                                                                             *
 ******************************************************************************/
-    private void buildTree(int rootIndex, ArrayList<PSTPoint> points) {
-	if(points == null || points.size() < 1) return;
-	// Since points are ordered by y decreasing, largest is first
-	PSTPoint rootPoint = points.remove(0);
-	// Find median X value
-	//  - uses average X value of non-root points
-	double sumX = 0.0d;
-	for(PSTPoint p : points)
-	    sumX += p.getX();
-	double medianX = sumX/points.size();
-	// Set the root node
-	heap[rootIndex] = new ArrayPSTNode(rootPoint);
-	// Bisect the non-root points into two arrays above and below the median
-	ArrayList<PSTPoint> upperPoints = new ArrayList<PSTPoint>();
-	ArrayList<PSTPoint> lowerPoints = new ArrayList<PSTPoint>();
-	for(PSTPoint p : points) {
-	    // note: if p.x is equal to median, it will be added to left child
-	    if(p.getX() <= medianX) lowerPoints.add(p);
-	    else upperPoints.add(p);
+    private void buildTree(int rootIndex, double[] sortedX, double[] sortedY,
+			   long[] sortedIds, int lo, int hi, int cutoff) {
+	if(lo >= hi) return;
+	int indexOfMaxY = lo;
+	for(int i = lo+1; i < hi; i++)
+	    if(sortedY[i] > sortedY[indexOfMaxY])
+		indexOfMaxY = i;
+	xs[rootIndex] = sortedX[indexOfMaxY];
+	ys[rootIndex] = sortedY[indexOfMaxY];
+	if(ids != null)
+	    ids[rootIndex] = sortedIds[indexOfMaxY];
+	for(int i = indexOfMaxY; i > lo; i--) {
+	    sortedX[i] = sortedX[i-1];
+	    sortedY[i] = sortedY[i-1];
+	    if(ids != null) sortedIds[i] = sortedIds[i-1];
+	}
+	int nLower = leftSubtreeSize(hi - lo);
+	if(nLower > 0)
+	    splits[rootIndex] = sortedX[lo+nLower];
+	if(hi - lo >= cutoff) {
+	    // the two subtrees use disjoint parts of every array
+	    ForkJoinTask.invokeAll(new Build(indexOfLeftChild(rootIndex),
+					     sortedX,sortedY,sortedIds,
+					     lo+1,lo+1+nLower,cutoff),
+				   new Build(indexOfRightChild(rootIndex),
+					     sortedX,sortedY,sortedIds,
+					     lo+1+nLower,hi,cutoff));
+	} else {
+	    buildTree(indexOfLeftChild(rootIndex),sortedX,sortedY,sortedIds,
+		      lo+1,lo+1+nLower,cutoff);
+	    buildTree(indexOfRightChild(rootIndex),sortedX,sortedY,sortedIds,
+		      lo+1+nLower,hi,cutoff);
+	}
+    }
+    private class Build extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private final int rootIndex, lo, hi, cutoff;
+	private final double[] sortedX, sortedY;
+	private final long[] sortedIds;
+	Build(int rootIndex, double[] sortedX, double[] sortedY,
+	      long[] sortedIds, int lo, int hi, int cutoff) {
+	    this.rootIndex = rootIndex;
+	    this.sortedX = sortedX;
+	    this.sortedY = sortedY;
+	    this.sortedIds = sortedIds;
+	    this.lo = lo;
+	    this.hi = hi;
+	    this.cutoff = cutoff;
+	}
+	protected void compute() {
+	    buildTree(rootIndex,sortedX,sortedY,sortedIds,lo,hi,cutoff);
 	}
-	if(lowerPoints.size() > 0)
-	    buildTree(indexOfLeftChild(rootIndex),lowerPoints);
-	if(upperPoints.size() > 0)
-	    buildTree(indexOfRightChild(rootIndex),upperPoints);
     }
 /******************************************************************************
 *                                                                             *
@@ -98,26 +179,236 @@ public class ArrayPST implements PrioritySearchTree {
     public List<PSTPoint> enumerate3Sided(double minX, 
 					  double maxX, double minY)
 	throws EmptyTreeException {
-	return enumerate3Sided(minX,maxX,minY,
-			       new ArrayList<PSTPoint>(),0);
+	IndexList indices = enumerate3Sided(minX,maxX,minY,new IndexList(),0);
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>(indices.size());
+	for(int i = 0; i < indices.size(); i++) {
+	    int index = indices.get(i);
+	    points.add(new PSTPoint(xs[index],ys[index]));
+	}
+	return points;
+    }
+    // As enumerate3Sided, but returns the ids of the points found.
+    // Requires the tree to have been built with ids.
+    public long[] enumerate3SidedIds(double minX, double maxX, double minY)
+	throws EmptyTreeException {
+	if(ids == null)
+	    throw new IllegalStateException("tree was built without ids");
+	IndexList indices = enumerate3Sided(minX,maxX,minY,new IndexList(),0);
+	long[] found = new long[indices.size()];
+	for(int i = 0; i < found.length; i++)
+	    found[i] = ids[indices.get(i)];
+	return found;
+    }
+/******************************************************************************
+* As enumerate3Sided, but writes the points of the query held by cursor       *
+* into xs and ys until they are full or the points run out, and leaves        *
+* cursor where it stopped.  Returns the number written; while                 *
+* cursor.hasMore(), calling again writes the next points.  Nothing is         *
+* allocated.                                                                  *
+*                                                                             *
+* The nodes are walked in preorder without a stack, since the parent of a     *
+* node is found from its index.  The cursor keeps the last node visited,      *
+* plus one.                                                                   *
+******************************************************************************/
+    public int enumerate3Sided(EnumerationCursor cursor,
+			       double[] xs, double[] ys) {
+	int capacity = Math.min(xs.length,ys.length);
+	int count = 0;
+	int index = cursor.index - 1;
+	while(index >= -1 && count < capacity) {
+	    index = next3Sided(index,cursor.xmin,cursor.xmax,cursor.ymin);
+	    if(index < 0) break;
+	    double nodeX = this.xs[index];
+	    if(nodeX >= cursor.xmin && nodeX <= cursor.xmax) {
+		xs[count] = nodeX;
+		ys[count] = this.ys[index];
+		count++;
+	    }
+	}
+	cursor.index = index + 1;
+	return count;
+    }
+    // As above, but writes the ids of the points found.
+    // Requires the tree to have been built with ids.
+    public int enumerate3SidedIds(EnumerationCursor cursor, long[] found) {
+	if(ids == null)
+	    throw new IllegalStateException("tree was built without ids");
+	int count = 0;
+	int index = cursor.index - 1;
+	while(index >= -1 && count < found.length) {
+	    index = next3Sided(index,cursor.xmin,cursor.xmax,cursor.ymin);
+	    if(index < 0) break;
+	    double nodeX = xs[index];
+	    if(nodeX >= cursor.xmin && nodeX <= cursor.xmax)
+		found[count++] = ids[index];
+	}
+	cursor.index = index + 1;
+	return count;
+    }
+    // The node after index in a preorder walk of the nodes whose subtrees
+    // may hold points of the query, or -2 after the last.  Index -1 starts
+    // the walk.
+    private int next3Sided(int index, double minX, double maxX, double minY) {
+	if(index == -1)
+	    return isValidNode(0) && ys[0] >= minY ? 0 : -2;
+	int indexL = indexOfLeftChild(index);
+	if(isValidNode(indexL)) {
+	    double nodeR = splits[index];
+	    if(nodeR >= minX && ys[indexL] >= minY)
+		return indexL;
+	    if(nodeR < maxX && isValidNode(indexL+1) && ys[indexL+1] >= minY)
+		return indexL+1;
+	}
+	// climb until a right sibling remains to be walked
+	while(index > 0) {
+	    int parent = (index-1)/2;
+	    if(index == indexOfLeftChild(parent) && splits[parent] < maxX &&
+	       isValidNode(index+1) && ys[index+1] >= minY)
+		return index+1;
+	    index = parent;
+	}
+	return -2;
+    }
+/******************************************************************************
+* Lazy enumeration                                                            *
+*                                                                             *
+* iterate3Sided returns the points of enumerate3Sided one at a time,          *
+* driving the cursor walk above one step per point, so a caller which         *
+* stops early never visits the rest of the tree.  stream3Sided wraps the      *
+* same walk as a sequential Stream.                                           *
+******************************************************************************/
+    public Iterator<PSTPoint> iterate3Sided(double minX, double maxX,
+					   double minY) {
+	return new Iterator3Sided(minX,maxX,minY);
+    }
+    public Stream<PSTPoint> stream3Sided(double minX, double maxX, double minY) {
+	return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+	    iterate3Sided(minX,maxX,minY),
+	    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+				    false);
+    }
+    private class Iterator3Sided implements Iterator<PSTPoint> {
+	private final double minX, maxX, minY;
+	// the last node walked: -1 before the first, -2 after the last
+	private int index = -1;
+	private boolean found;
+	Iterator3Sided(double minX, double maxX, double minY) {
+	    this.minX = minX;
+	    this.maxX = maxX;
+	    this.minY = minY;
+	}
+	public boolean hasNext() {
+	    while(!found && index >= -1) {
+		index = next3Sided(index,minX,maxX,minY);
+		if(index < 0) break;
+		found = xs[index] >= minX && xs[index] <= maxX;
+	    }
+	    return found;
+	}
+	public PSTPoint next() {
+	    if(!hasNext()) throw new NoSuchElementException();
+	    found = false;
+	    return new PSTPoint(xs[index],ys[index]);
+	}
+    }
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: topK3Sided                                                   *
+*                                                                             *
+* PURPOSE:       Returns the k highest points within a query region           *
+*                bounded on 3 sides, highest first.                           *
+*                                                                             *
+*                Every node is higher than the nodes below it, so taking      *
+*                nodes from a heap keyed on y, and adding the children of     *
+*                each node taken, yields them in decreasing y.  Only nodes    *
+*                whose subtree may hold points of the query are added.        *
+*                Those outside [xmin,xmax] lie along the two boundaries of    *
+*                the query, so O(log n + k) nodes are taken, in               *
+*                O(log n + k log k) time.  iterate3SidedByY does the same     *
+*                lazily, for when k is not known in advance.                  *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   double/minX                                                  *
+*   Description: Minimum x value.                                             *
+*                                                                             *
+*   Type/Name:   double/maxX                                                  *
+*   Description: Maximum x value.                                             *
+*                                                                             *
+*   Type/Name:   double/minY                                                  *
+*   Description: Minimum y value.                                             *
+*                                                                             *
+*   Type/Name:   int/k                                                        *
+*   Description: Most points to return.                                       *
+*                                                                             *
+* RETURN:        List<PSTPoint> of at most k points, in decreasing y.         *
+*                                                                             *
+******************************************************************************/
+    public List<PSTPoint> topK3Sided(double minX, double maxX, double minY,
+				     int k) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>(Math.min(k,16));
+	Iterator<PSTPoint> descending = iterate3SidedByY(minX,maxX,minY);
+	while(points.size() < k && descending.hasNext())
+	    points.add(descending.next());
+	return points;
+    }
+    public Iterator<PSTPoint> iterate3SidedByY(double minX, double maxX,
+					      double minY) {
+	return new Descending3Sided(minX,maxX,minY);
+    }
+    private class Descending3Sided implements Iterator<PSTPoint> {
+	private final double minX, maxX, minY;
+	// nodes whose subtrees are still to be walked, keyed on y
+	private final IndexHeap heap = new IndexHeap();
+	// the node to be returned next, or -1 if not yet found
+	private int next = -1;
+	Descending3Sided(double minX, double maxX, double minY) {
+	    this.minX = minX;
+	    this.maxX = maxX;
+	    this.minY = minY;
+	    add(0);
+	}
+	private void add(int index) {
+	    if(isValidNode(index) && ys[index] >= minY)
+		heap.add(index,ys[index]);
+	}
+	public boolean hasNext() {
+	    while(next < 0 && heap.size() > 0) {
+		int index = heap.removeMax();
+		if(isValidNode(indexOfLeftChild(index))) {
+		    double nodeR = splits[index];
+		    if(nodeR >= minX)
+			add(indexOfLeftChild(index));
+		    if(nodeR < maxX)
+			add(indexOfRightChild(index));
+		}
+		if(xs[index] >= minX && xs[index] <= maxX)
+		    next = index;
+	    }
+	    return next >= 0;
+	}
+	public PSTPoint next() {
+	    if(!hasNext()) throw new NoSuchElementException();
+	    PSTPoint p = new PSTPoint(xs[next],ys[next]);
+	    next = -1;
+	    return p;
+	}
     }
     // Note that as minY and maxX approach positive infinity and
     // minX approaches negative infinity, this search visits more nodes.
     // In the worst case, all nodes are visited.
-    private List<PSTPoint> enumerate3Sided(double minX,
-					   double maxX, double minY,
-					   ArrayList<PSTPoint> list,
-					   int index)
+    private IndexList enumerate3Sided(double minX,
+				      double maxX, double minY,
+				      IndexList list,
+				      int index)
 	throws EmptyTreeException {
-	ArrayPSTNode node = heap[index];
-	if(node == null) return list;
-	if(node.getY() >= minY) {
-	    double nodeX = node.getX();
+	if(!isValidNode(index)) return list;
+	if(ys[index] >= minY) {
+	    double nodeX = xs[index];
 	    if(nodeX >= minX && nodeX <= maxX) { 
-		list.add(node.getPoint());
+		list.add(index);
 	    }
 	    if(isValidNode(indexOfLeftChild(index))) {
-		double nodeR = maxX(index);
+		double nodeR = splits[index];
 		// nodeR >= points in left tree >= minX
 		if(nodeR >= minX)
 		    enumerate3Sided(minX,maxX,minY,list,
@@ -140,18 +431,17 @@ public class ArrayPST implements PrioritySearchTree {
 	throw new NoPointsInRangeException();
     }
     private double maxYinRange(double minX, double maxX,double minY, int index) {
-	ArrayPSTNode node = heap[index];
-	if(node == null || node.getY() < minY) return Double.NEGATIVE_INFINITY;
-	double nodeX = node.getX();
-	if(nodeX >= minX && nodeX <= maxX) return node.getY();
+	if(!isValidNode(index) || ys[index] < minY) return Double.NEGATIVE_INFINITY;
+	double nodeX = xs[index];
+	if(nodeX >= minX && nodeX <= maxX) return ys[index];
 	if(isValidNode(indexOfLeftChild(index))) {
-	    double nodeR = maxX(indexOfLeftChild(index));
+	    double nodeR = splits[index];
 	    // nodeR >= points in left tree >= minX
 	    if(nodeR >= minX && 
 	       nodeR < maxX && isValidNode(indexOfRightChild(index))) {
 		double maxLeft = maxYinRange(minX,maxX,minY,indexOfLeftChild(index));
 		double maxRight = maxYinRange(minX,maxX,minY,indexOfRightChild(index));
-		return (maxLeft < maxRight ? maxLeft : maxRight);
+		return (maxLeft > maxRight ? maxLeft : maxRight);
 	    } else if(nodeR >= minX) {
 		return maxYinRange(minX,maxX,minY,indexOfLeftChild(index));
 	    } else if(nodeR < maxX && isValidNode(indexOfRightChild(index))) {
@@ -167,20 +457,22 @@ public class ArrayPST implements PrioritySearchTree {
 	throw new NoPointsInRangeException();
     }
     private double minXinRange(double minX, double maxX, double minY, int index) {
-	ArrayPSTNode node = heap[index];
-	if(node == null || node.getY() < minY)
+	if(!isValidNode(index) || ys[index] < minY)
 	    return Double.POSITIVE_INFINITY;
 	double min = Double.POSITIVE_INFINITY;
-	double nodeX = node.getX();
+	double nodeX = xs[index];
 	if(minX <= nodeX && nodeX <= maxX)
 	    min = nodeX;
 	if(isValidNode(indexOfLeftChild(index))) {
-	    double nodeR = maxX(indexOfLeftChild(index));
+	    double nodeR = splits[index];
+	    double minLeft = Double.POSITIVE_INFINITY;
 	    if(nodeR >= minX) {
-		double minLeft = minXinRange(minX,maxX,minY,indexOfLeftChild(index));
+		minLeft = minXinRange(minX,maxX,minY,indexOfLeftChild(index));
 		if(minLeft < min) min = minLeft;
 	    }
-	    if(nodeR < maxX && isValidNode(indexOfRightChild(index))) {
+	    // anything found on the left beats everything on the right
+	    if(nodeR < maxX && minLeft == Double.POSITIVE_INFINITY &&
+	       isValidNode(indexOfRightChild(index))) {
 		double minRight = minXinRange(minX,maxX,minY,indexOfRightChild(index));
 		if(minRight < min) min = minRight;
 	    }
@@ -194,23 +486,24 @@ public class ArrayPST implements PrioritySearchTree {
 	throw new NoPointsInRangeException();
     }
     private double maxXinRange(double minX, double maxX, double minY, int index) {
-	ArrayPSTNode node = heap[index];
-	if(node == null || node.getY() < minY)
+	if(!isValidNode(index) || ys[index] < minY)
 	    return Double.NEGATIVE_INFINITY;
 	double max = Double.NEGATIVE_INFINITY;
-	double nodeX = node.getX();
+	double nodeX = xs[index];
 	if(minX <= nodeX && nodeX <= maxX)
 	    max = nodeX;
 	if(isValidNode(indexOfLeftChild(index))) {
-	    double nodeR = maxX(indexOfLeftChild(index));
-	    if(nodeR >= minX) {
-		double maxLeft = maxXinRange(minX,maxX,minY,indexOfLeftChild(index));
-		if(maxLeft > max) max = maxLeft;
-	    }
+	    double nodeR = splits[index];
+	    double maxRight = Double.NEGATIVE_INFINITY;
 	    if(nodeR < maxX && isValidNode(indexOfRightChild(index))) {
-		double maxRight = maxXinRange(minX,maxX,minY,indexOfRightChild(index));
+		maxRight = maxXinRange(minX,maxX,minY,indexOfRightChild(index));
 		if(maxRight > max) max = maxRight;
 	    }
+	    // anything found on the right beats everything on the left
+	    if(nodeR >= minX && maxRight == Double.NEGATIVE_INFINITY) {
+		double maxLeft = maxXinRange(minX,maxX,minY,indexOfLeftChild(index));
+		if(maxLeft > max) max = maxLeft;
+	    }
 	}
 	return max;
     }
@@ -221,15 +514,14 @@ public class ArrayPST implements PrioritySearchTree {
 	throw new NoPointsInRangeException();
     }
     private double minYinRange(double minX, double maxX, double minY, int index) {
-	ArrayPSTNode node = heap[index];
-	if(node == null || node.getY() < minY)
+	if(!isValidNode(index) || ys[index] < minY)
 	    return Double.POSITIVE_INFINITY;
 	double min = Double.POSITIVE_INFINITY;
-	double nodeX = node.getX();
+	double nodeX = xs[index];
 	if(minX <= nodeX && nodeX <= maxX)
-	    min = node.getY();
+	    min = ys[index];
 	if(isValidNode(indexOfLeftChild(index))) {
-	    double nodeR = maxX(indexOfLeftChild(index));
+	    double nodeR = splits[index];
 	    if(nodeR >= minX) {
 		double minLeft = minYinRange(minX,maxX,minY,indexOfLeftChild(index));
 		if(minLeft < min) min = minLeft;
@@ -247,12 +539,12 @@ public class ArrayPST implements PrioritySearchTree {
 ******************************************************************************/
     public double minX() throws EmptyTreeException {
 	int index = 0;
-	if(heap[index] == null) throw new EmptyTreeException();
-	double min = heap[index].getX();
+	if(n < 1) throw new EmptyTreeException();
+	double min = xs[index];
 	while(isValidNode(indexOfLeftChild(index))) {
 	    index = indexOfLeftChild(index);
-	    if(heap[index].getX() < min)
-		min = heap[index].getX();
+	    if(xs[index] < min)
+		min = xs[index];
 	}
 	return min;
     }
@@ -260,29 +552,29 @@ public class ArrayPST implements PrioritySearchTree {
 	return maxX(0);
     }
     private double maxX(int index) {
-	double max = heap[index].getX();
+	double max = xs[index];
 	while(isValidNode(indexOfRightChild(index))) {
 	    index = indexOfRightChild(index);
-	    if(heap[index].getX() > max)
-		max = heap[index].getX();
+	    if(xs[index] > max)
+		max = xs[index];
 	}
 	// Since a leaf without a sibling is always left
 	// we have to check the last left child just in case
 	if(isValidNode(indexOfLeftChild(index)) &&
-	   heap[indexOfLeftChild(index)].getX() > max)
-	    max = heap[indexOfLeftChild(index)].getX();
+	   xs[indexOfLeftChild(index)] > max)
+	    max = xs[indexOfLeftChild(index)];
 	return max;
     }
     public double maxY() throws EmptyTreeException {
-	if(heap[0] == null) throw new EmptyTreeException();
-	return heap[0].getY();
+	if(n < 1) throw new EmptyTreeException();
+	return ys[0];
     }
     public double minY() throws EmptyTreeException {
-	if(heap[0] == null) throw new EmptyTreeException();
+	if(n < 1) throw new EmptyTreeException();
 	return minY(0);
     }
     private double minY(int index) {
-	double min = heap[index].getY();
+	double min = ys[index];
 	if(isValidNode(indexOfRightChild(index)) &&
 	   isValidNode(indexOfLeftChild(index))) {
 		double minLeft = minY(indexOfLeftChild(index));
@@ -300,15 +592,14 @@ public class ArrayPST implements PrioritySearchTree {
 * Utility Functions                                                           *
 ******************************************************************************/
     private boolean isValidNode(int index) {
-	return index < heap.length && heap[index] != null;
-    }
-    // height of a balanced tree with n elements
-    private static int treeHeight(int n) {
-	return doubleToInt(Math.ceil(Math.log(n+1)/Math.log(2)));
+	return index < n;
     }
-    // max number of heap nodes in a tree of given height
-    private static int heapSize(int height) {
-	return doubleToInt(Math.pow(2, height)-1);
+    // size of the left subtree of a complete tree with m nodes
+    private static int leftSubtreeSize(int m) {
+	if(m <= 1) return 0;
+	int h = 31 - Integer.numberOfLeadingZeros(m); // depth of last level
+	int lastLevel = m - ((1 << h) - 1);
+	return ((1 << (h-1)) - 1) + Math.min(lastLevel,1 << (h-1));
     }
     private static int indexOfLeftChild(int rootIndex) {
 	return (2*rootIndex)+1;
@@ -316,7 +607,4 @@ public class ArrayPST implements PrioritySearchTree {
     private static int indexOfRightChild(int rootIndex) {
 	return (2*rootIndex)+2;
     }
-    private static int doubleToInt(double d) {
-	return (new Double(d)).intValue();
-    }
-}
\ No newline at end of file
+}
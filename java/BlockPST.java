@@ -0,0 +1,422 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    BlockPST.java                                                      *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   A priority search tree with fan-out B instead of 2.  Every node    *
+*          holds the point with highest y in its subtree, and the rest of     *
+*          its points are split by x into B groups of equal size, one per     *
+*          child.                                                             *
+*                                                                             *
+*          The children of a node are stored together in one block:           *
+*                                                                             *
+*            keys[0..B-1]  least x in the subtree of each child               *
+*            xs[0..B-1]    x of the point held by each child                  *
+*            ys[0..B-1]    y of the point held by each child                  *
+*                                                                             *
+*          With B = 4 and doubles a block is 96 bytes, i.e. one or two        *
+*          cache lines, and everything needed to decide which children        *
+*          to visit is in it.  The height of the tree drops from log n to     *
+*          log_B n, and so does the number of dependent loads on a root to    *
+*          leaf path.  Block 0 holds the root alone, in its first slot.       *
+*          Blocks are numbered in breadth first order.                        *
+*                                                                             *
+*          Empty slots, which only occur at the end of a block, have key      *
+*          +∞.                                                                *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+
+public class BlockPST implements PrioritySearchTree {
+    static final int B = 4;
+    // offsets within a block
+    private static final int KEYS = 0, XS = B, YS = 2*B, BLOCK_SIZE = 3*B;
+
+    private double[] blocks;
+    // children[b*B+i] is the block holding the children of slot i of
+    // block b, or -1 if it has none
+    private int[] children;
+    private int nBlocks;
+    private final int n;
+
+    public BlockPST(PSTPoint[] points) {
+	n = points.length;
+	double[] xs = new double[n], ys = new double[n];
+	for(int i = 0; i < n; i++) {
+	    xs[i] = points[i].getX();
+	    ys[i] = points[i].getY();
+	}
+	Sort.heapSort(xs,ys);
+	build(xs,ys);
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: build                                                        *
+*                                                                             *
+* PURPOSE:       Builds the blocks in breadth first order from points         *
+*                sorted by x.  pending[b*B+i] and pending[b*B+i+1] delimit    *
+*                the points, [lo,hi), which slot i of block b must take.      *
+*                                                                             *
+* NOTES:         Taking the highest point out of its group shifts the rest    *
+*                of the group up by one, so the group stays sorted and the    *
+*                build takes O(n log_B n).                                    *
+*                                                                             *
+******************************************************************************/
+    private void build(double[] xs, double[] ys) {
+	int capacity = Math.max(1,(n + B-1)/B*2);
+	blocks = new double[capacity*BLOCK_SIZE];
+	children = new int[capacity*B];
+	int[] pending = new int[capacity*B*2];
+	nBlocks = 1;
+	clearBlock(0);
+	pending[0] = 0;
+	pending[1] = n;
+	for(int i = 1; i < B; i++)
+	    pending[2*i] = pending[2*i+1] = n;
+	for(int b = 0; b < nBlocks; b++) {
+	    for(int i = 0; i < B; i++) {
+		int slot = b*B + i;
+		int lo = pending[2*slot], hi = pending[2*slot+1];
+		if(lo >= hi) continue;
+		// least x of the group, then move its highest point to lo
+		blocks[b*BLOCK_SIZE + KEYS + i] = xs[lo];
+		int top = lo;
+		for(int j = lo+1; j < hi; j++)
+		    if(ys[j] > ys[top]) top = j;
+		double x = xs[top], y = ys[top];
+		for(int j = top; j > lo; j--) {
+		    xs[j] = xs[j-1];
+		    ys[j] = ys[j-1];
+		}
+		blocks[b*BLOCK_SIZE + XS + i] = x;
+		blocks[b*BLOCK_SIZE + YS + i] = y;
+		lo++;
+		if(lo >= hi) continue;
+		// the rest of the group goes to a new block, split B ways
+		if(nBlocks == capacity) {
+		    capacity *= 2;
+		    blocks = Arrays.copyOf(blocks,capacity*BLOCK_SIZE);
+		    children = Arrays.copyOf(children,capacity*B);
+		    pending = Arrays.copyOf(pending,capacity*B*2);
+		}
+		int child = nBlocks++;
+		clearBlock(child);
+		children[slot] = child;
+		long m = hi - lo;
+		int groups = (int)Math.min(B,m);
+		for(int k = 0; k < B; k++) {
+		    int childSlot = child*B + k;
+		    if(k < groups) {
+			pending[2*childSlot] = lo + (int)(k*m/groups);
+			pending[2*childSlot+1] = lo + (int)((k+1)*m/groups);
+		    } else {
+			pending[2*childSlot] = pending[2*childSlot+1] = hi;
+		    }
+		}
+	    }
+	}
+	blocks = Arrays.copyOf(blocks,nBlocks*BLOCK_SIZE);
+	children = Arrays.copyOf(children,nBlocks*B);
+    }
+    private void clearBlock(int b) {
+	for(int i = 0; i < B; i++) {
+	    blocks[b*BLOCK_SIZE + KEYS + i] = Double.POSITIVE_INFINITY;
+	    blocks[b*BLOCK_SIZE + XS + i] = Double.NaN;
+	    blocks[b*BLOCK_SIZE + YS + i] = Double.NEGATIVE_INFINITY;
+	    children[b*B + i] = -1;
+	}
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: highest3Sided                                                *
+*                                                                             *
+* PURPOSE:       Find the point with highest y-coordinate in the range        *
+*                [xmin,xmax] with y-coordinate at least ymin.                 *
+*                                                                             *
+* RETURN:        The highest point in range, or (+∞,-∞) if there is none.     *
+*                                                                             *
+* NOTES:         The subtree of slot i lies between keys[i] and keys[i+1],    *
+*                so whether to look at a slot is decided from its own         *
+*                block.  The three tests are combined with & rather than      *
+*                &&, so the JIT may evaluate them without a branch each;      *
+*                the loop still branches once per slot on their result,       *
+*                and once on the key to stop at the end of the query.         *
+*                                                                             *
+******************************************************************************/
+    public PSTPoint highest3Sided(double xmin, double xmax, double ymin) {
+	int slot = n < 1 ? -1
+	    : highest3Sided(0,Double.POSITIVE_INFINITY,xmin,xmax,ymin,-1);
+	if(slot < 0) return PSTPoint.NONE_HIGHEST;
+	return new PSTPoint(getX(slot),getY(slot));
+    }
+    // hi bounds the x-coordinates in block b from above; returns the
+    // best slot found so far, or -1
+    private int highest3Sided(int b, double hi, double xmin, double xmax,
+			      double ymin, int best) {
+	int base = b*BLOCK_SIZE;
+	for(int i = 0; i < B; i++) {
+	    double key = blocks[base + KEYS + i];
+	    if(key > xmax) break; // so are all keys to the right
+	    double upper = i+1 < B ? Math.min(blocks[base + KEYS + i+1],hi) : hi;
+	    double y = blocks[base + YS + i];
+	    double bestY = best < 0 ? ymin : getY(best);
+	    boolean visit = (upper >= xmin) & (y >= ymin) & (y > bestY | best < 0);
+	    if(!visit) continue;
+	    double x = blocks[base + XS + i];
+	    // nothing in the subtree of this slot is higher than its point
+	    if(xmin <= x && x <= xmax) {
+		best = b*B + i;
+	    } else if(children[b*B + i] >= 0) {
+		best = highest3Sided(children[b*B + i],upper,
+				     xmin,xmax,ymin,best);
+	    }
+	}
+	return best;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: enumerate3Sided                                              *
+*                                                                             *
+* PURPOSE:       Returns a list of points within a query region               *
+*                bounded on 3 sides (a minimum and maximum x, and a           *
+*                minimum y), but no maximum y value.                          *
+*                                                                             *
+* RETURN:        List<PSTPoint> of all points within boundaries.              *
+*                                                                             *
+******************************************************************************/
+    public List<PSTPoint> enumerate3Sided(double xmin, double xmax, double ymin) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>();
+	if(n > 0)
+	    enumerate3Sided(0,Double.POSITIVE_INFINITY,xmin,xmax,ymin,points);
+	return points;
+    }
+    private void enumerate3Sided(int b, double hi, double xmin, double xmax,
+				 double ymin, ArrayList<PSTPoint> points) {
+	int base = b*BLOCK_SIZE;
+	for(int i = 0; i < B; i++) {
+	    double key = blocks[base + KEYS + i];
+	    if(key > xmax) break;
+	    double upper = i+1 < B ? Math.min(blocks[base + KEYS + i+1],hi) : hi;
+	    double y = blocks[base + YS + i];
+	    if(!((upper >= xmin) & (y >= ymin))) continue;
+	    double x = blocks[base + XS + i];
+	    if(xmin <= x && x <= xmax)
+		points.add(new PSTPoint(x,y));
+	    if(children[b*B + i] >= 0)
+		enumerate3Sided(children[b*B + i],upper,xmin,xmax,ymin,points);
+	}
+    }
+
+/******************************************************************************
+* PrioritySearchTree                                                          *
+******************************************************************************/
+    public double maxYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	PSTPoint p = highest3Sided(minX,maxX,minY);
+	if(p.getY() == Double.NEGATIVE_INFINITY)
+	    throw new NoPointsInRangeException();
+	return p.getY();
+    }
+    public double minYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int slot = n < 1 ? -1
+	    : lowest3Sided(0,Double.POSITIVE_INFINITY,minX,maxX,minY,-1);
+	if(slot < 0) throw new NoPointsInRangeException();
+	return getY(slot);
+    }
+    public double minXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int slot = n < 1 ? -1
+	    : leftMost3Sided(0,Double.POSITIVE_INFINITY,minX,maxX,minY,-1);
+	if(slot < 0) throw new NoPointsInRangeException();
+	return getX(slot);
+    }
+    public double maxXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	int slot = n < 1 ? -1
+	    : rightMost3Sided(0,Double.POSITIVE_INFINITY,minX,maxX,minY,-1);
+	if(slot < 0) throw new NoPointsInRangeException();
+	return getX(slot);
+    }
+/******************************************************************************
+* The walks below are those of highest3Sided, with the test for visiting a    *
+* slot changed to suit the query.  The subtree of slot i holds no x less      *
+* than keys[i], so once a point is found no further left, the leftmost        *
+* point skips the slot, and the rest of the block with it.  The rightmost     *
+* point walks the slots right to left and skips a slot whose subtree lies     *
+* wholly left of the point found.  Nothing bounds y from below, so the        *
+* lowest point visits every slot which may hold points of the query.          *
+******************************************************************************/
+    private int leftMost3Sided(int b, double hi, double xmin, double xmax,
+			       double ymin, int best) {
+	int base = b*BLOCK_SIZE;
+	for(int i = 0; i < B; i++) {
+	    double key = blocks[base + KEYS + i];
+	    if(key > xmax || (best >= 0 && key >= getX(best))) break;
+	    double upper = i+1 < B ? Math.min(blocks[base + KEYS + i+1],hi) : hi;
+	    double y = blocks[base + YS + i];
+	    boolean visit = (upper >= xmin) & (y >= ymin);
+	    if(!visit) continue;
+	    double x = blocks[base + XS + i];
+	    if(xmin <= x && x <= xmax && (best < 0 || x < getX(best)))
+		best = b*B + i;
+	    if(children[b*B + i] >= 0)
+		best = leftMost3Sided(children[b*B + i],upper,
+				      xmin,xmax,ymin,best);
+	}
+	return best;
+    }
+    private int rightMost3Sided(int b, double hi, double xmin, double xmax,
+				double ymin, int best) {
+	int base = b*BLOCK_SIZE;
+	for(int i = B-1; i >= 0; i--) {
+	    double key = blocks[base + KEYS + i];
+	    double upper = i+1 < B ? Math.min(blocks[base + KEYS + i+1],hi) : hi;
+	    if(upper < xmin || (best >= 0 && upper <= getX(best))) break;
+	    double y = blocks[base + YS + i];
+	    boolean visit = (key <= xmax) & (y >= ymin);
+	    if(!visit) continue;
+	    double x = blocks[base + XS + i];
+	    if(xmin <= x && x <= xmax && (best < 0 || x > getX(best)))
+		best = b*B + i;
+	    if(children[b*B + i] >= 0)
+		best = rightMost3Sided(children[b*B + i],upper,
+				       xmin,xmax,ymin,best);
+	}
+	return best;
+    }
+    private int lowest3Sided(int b, double hi, double xmin, double xmax,
+			     double ymin, int best) {
+	int base = b*BLOCK_SIZE;
+	for(int i = 0; i < B; i++) {
+	    double key = blocks[base + KEYS + i];
+	    if(key > xmax) break;
+	    double upper = i+1 < B ? Math.min(blocks[base + KEYS + i+1],hi) : hi;
+	    double y = blocks[base + YS + i];
+	    boolean visit = (upper >= xmin) & (y >= ymin);
+	    if(!visit) continue;
+	    double x = blocks[base + XS + i];
+	    if(xmin <= x && x <= xmax && (best < 0 || y < getY(best)))
+		best = b*B + i;
+	    if(children[b*B + i] >= 0)
+		best = lowest3Sided(children[b*B + i],upper,
+				    xmin,xmax,ymin,best);
+	}
+	return best;
+    }
+
+/******************************************************************************
+* Utility Functions                                                           *
+******************************************************************************/
+    public int size() {
+	return n;
+    }
+    // x and y of the point in slot s = b*B+i
+    private double getX(int slot) {
+	return blocks[(slot/B)*BLOCK_SIZE + XS + slot%B];
+    }
+    private double getY(int slot) {
+	return blocks[(slot/B)*BLOCK_SIZE + YS + slot%B];
+    }
+    public void printArray() {
+	for(int b = 0; b < nBlocks; b++) {
+	    System.out.print("[");
+	    for(int i = 0; i < B; i++) {
+		if(blocks[b*BLOCK_SIZE + KEYS + i] == Double.POSITIVE_INFINITY)
+		    break;
+		if(i > 0) System.out.print(" ");
+		System.out.print(new PSTPoint(getX(b*B+i),getY(b*B+i)));
+	    }
+	    System.out.print("] ");
+	}
+	System.out.println();
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+*                                                                             *
+* Builds a BlockPST, an InPlacePST and an ArrayPST on the same points and     *
+* times the same random queries on each.                                      *
+*                                                                             *
+******************************************************************************/
+    public static void main(String[] args)
+	throws EmptyTreeException, NoPointsInRangeException {
+	int n = 15;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	int queries = 100000;
+	if(args.length > 1) queries = Integer.parseInt(args[1]);
+	System.out.println("Creating points...");
+	PSTPoint[] testPoints = new PSTPoint[n];
+	for(int i = 0; i < n ; i++)
+	    testPoints[i] = new PSTPoint(i,n-i);
+	System.out.println("Building PSTs with " + n + " nodes...");
+	StopWatch sw = new StopWatch();
+	BlockPST block = new BlockPST(testPoints);
+	System.out.println("Block implementation took: " + sw.stop());
+	sw = new StopWatch();
+	InPlacePST inPlace = new InPlacePST(testPoints);
+	System.out.println("In-place implementation took: " + sw.stop());
+	sw = new StopWatch();
+	ArrayPST array =
+	    new ArrayPST(new ArrayList<PSTPoint>(Arrays.asList(testPoints)));
+	System.out.println("Array implementation took: " + sw.stop());
+	if(n < 20) {
+	    System.out.print("PST: "); block.printArray();
+	}
+	System.out.println();
+
+	// point queries
+	Random random = new Random(0);
+	double sum = 0;
+	sw = new StopWatch();
+	for(int q = 0; q < queries; q++) {
+	    double x = random.nextInt(n);
+	    sum += block.highest3Sided(x,x,0).getY();
+	}
+	System.out.println(queries + " point queries, block: "
+			   + sw.stop() + " (" + sum + ")");
+	random.setSeed(0);
+	sum = 0;
+	sw = new StopWatch();
+	for(int q = 0; q < queries; q++) {
+	    double x = random.nextInt(n);
+	    sum += inPlace.highest3Sided(x,x,0).getY();
+	}
+	System.out.println(queries + " point queries, in-place: "
+			   + sw.stop() + " (" + sum + ")");
+	random.setSeed(0);
+	sum = 0;
+	sw = new StopWatch();
+	for(int q = 0; q < queries; q++) {
+	    double x = random.nextInt(n);
+	    sum += array.maxYinRange(x,x,0);
+	}
+	System.out.println(queries + " point queries, array: "
+			   + sw.stop() + " (" + sum + ")");
+	System.out.println();
+
+	// narrow 3-sided queries, about 100 points each
+	PrioritySearchTree[] trees = { block, inPlace, array };
+	String[] names = { "block", "in-place", "array" };
+	for(int t = 0; t < trees.length; t++) {
+	    random.setSeed(0);
+	    long found = 0;
+	    sw = new StopWatch();
+	    for(int q = 0; q < queries/10; q++) {
+		double x = random.nextInt(n);
+		found += trees[t].enumerate3Sided(x,x+199,n/2).size();
+	    }
+	    System.out.println(queries/10 + " enumerations, " + names[t]
+			       + ": " + sw.stop() + " (" + found + " points)");
+	}
+    }
+}
@@ -0,0 +1,508 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    DynamicPST.java                                                    *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   A priority search tree supporting insert and delete in             *
+*          O(log n) worst case time, after McCreight.                         *
+*                                                                             *
+*          The tree is a red-black tree on x with one leaf per point.  Each   *
+*          node has a split key as in PointerPST, the x of the last leaf on   *
+*          its left, and holds at most one point:                             *
+*                                                                             *
+*            - a point is held by a node on the path from the root to its     *
+*              own leaf                                                       *
+*            - a node's point is higher than every point below it             *
+*            - a node holding no point has no points below it                 *
+*                                                                             *
+*          There are 2n-1 nodes for n points, so many hold nothing, but a     *
+*          point can always be pushed down as far as its own leaf, which      *
+*          nothing else may hold.  Queries are those of PointerPST, stopping  *
+*          at empty nodes as well as at low ones.                             *
+*                                                                             *
+*          Points are assumed to have distinct x coordinates.                 *
+*                                                                             *
+*          See README for more information.                                   *
+*                                                                             *
+*          See LICENSE for license information.                               *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+
+public class DynamicPST implements PrioritySearchTree {
+    private Node root;
+    // number of points in the tree
+    private int size;
+
+    // A PointerPSTNode with the colour and parent a red-black tree needs.
+    // The static trees do without both.
+    private static class Node extends PointerPSTNode {
+	boolean red;
+	Node parent;
+	Node(double split) {
+	    super((PSTPoint)null);
+	    setSplit(split);
+	}
+	Node left() { return (Node)getLeftChild(); }
+	Node right() { return (Node)getRightChild(); }
+	boolean isLeaf() { return getLeftChild() == null; }
+    }
+
+    public DynamicPST() {
+    }
+    public DynamicPST(List<PSTPoint> points) {
+	for(PSTPoint p : points)
+	    insert(p);
+    }
+    public int size() {
+	return size;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: insert                                                       *
+*                                                                             *
+* PURPOSE:       Adds a point to the tree.                                    *
+*                                                                             *
+*                The leaf where a search for x ends is replaced by a red      *
+*                node with that leaf and a new one for the point as its       *
+*                children, and the tree is rebalanced as usual.  The point    *
+*                is then pushed down from the root, trading places with       *
+*                each lower point it meets, until it reaches an empty node.   *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   PSTPoint/p                                                   *
+*   Description: The point to add.                                            *
+*                                                                             *
+* RETURN:        Nothing.  Throws IllegalArgumentException if a point with    *
+*                the same x is already in the tree.                           *
+*                                                                             *
+******************************************************************************/
+    public void insert(PSTPoint p) {
+	double x = p.getX();
+	if(root == null) {
+	    root = new Node(x);
+	    root.setPoint(p);
+	    size = 1;
+	    return;
+	}
+	Node leaf = root;
+	while(!leaf.isLeaf())
+	    leaf = x <= leaf.getSplit() ? leaf.left() : leaf.right();
+	if(leaf.getSplit() == x)
+	    throw new IllegalArgumentException("x already in tree: " + x);
+	Node home = new Node(x);
+	Node node = new Node(Math.min(x,leaf.getSplit()));
+	node.red = true;
+	replace(leaf,node);
+	if(x < leaf.getSplit()) link(node,home,leaf);
+	else link(node,leaf,home);
+	// the leaf's point may stay above it, but not below an empty node
+	node.setPoint(leaf.getPoint());
+	leaf.setPoint(null);
+	insertFixup(node);
+	pushDown(root,p);
+	size++;
+    }
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: delete                                                       *
+*                                                                             *
+* PURPOSE:       Removes a point from the tree.                               *
+*                                                                             *
+*                The hole the point leaves is filled from below, then its     *
+*                leaf is removed with its parent, whose point is pushed       *
+*                down into the sibling that takes the parent's place, and     *
+*                the tree is rebalanced as usual.                             *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   PSTPoint/p                                                   *
+*   Description: The point to remove.                                         *
+*                                                                             *
+* RETURN:        true if a point with the coordinates of p was removed.       *
+*                                                                             *
+******************************************************************************/
+    public boolean delete(PSTPoint p) {
+	double x = p.getX(), y = p.getY();
+	Node node = root;
+	while(node != null) {
+	    PSTPoint q = node.getPoint();
+	    // nothing below is higher
+	    if(q == null || q.getY() < y) return false;
+	    if(q.getX() == x && q.getY() == y) break;
+	    if(node.isLeaf()) return false;
+	    node = x <= node.getSplit() ? node.left() : node.right();
+	}
+	if(node == null) return false;
+	node.setPoint(null);
+	pullUp(node);
+	size--;
+	while(!node.isLeaf())
+	    node = x <= node.getSplit() ? node.left() : node.right();
+	if(node == root) {
+	    root = null;
+	    return true;
+	}
+	Node parent = node.parent;
+	Node sibling = parent.left() == node ? parent.right() : parent.left();
+	PSTPoint q = parent.getPoint();
+	parent.setPoint(null);
+	replace(parent,sibling);
+	// q was held by the parent, so its leaf is under the sibling
+	if(q != null) pushDown(sibling,q);
+	if(!parent.red) {
+	    if(sibling.red) sibling.red = false;
+	    else deleteFixup(sibling);
+	}
+	return true;
+    }
+
+/******************************************************************************
+* Points                                                                      *
+******************************************************************************/
+    // Pushes p down from node, trading it for each lower point met, until
+    // it reaches an empty node.  The empty node is at worst p's own leaf.
+    private static void pushDown(Node node, PSTPoint p) {
+	double x = p.getX();
+	while(true) {
+	    PSTPoint q = node.getPoint();
+	    if(q == null) {
+		node.setPoint(p);
+		return;
+	    }
+	    if(p.getY() > q.getY()) {
+		node.setPoint(p);
+		p = q;
+		x = p.getX();
+	    }
+	    node = x <= node.getSplit() ? node.left() : node.right();
+	}
+    }
+    // Fills an empty node with the higher point of its children, and so
+    // on down, until the hole reaches a node with nothing below it.
+    private static void pullUp(Node node) {
+	while(!node.isLeaf()) {
+	    PSTPoint l = node.left().getPoint(), r = node.right().getPoint();
+	    if(l == null && r == null) return;
+	    Node child = r == null || (l != null && l.getY() > r.getY()) ?
+		node.left() : node.right();
+	    node.setPoint(child.getPoint());
+	    child.setPoint(null);
+	    node = child;
+	}
+    }
+
+/******************************************************************************
+* Red-black tree                                                              *
+*                                                                             *
+* As in Cormen et al., Introduction to Algorithms, Chapter 13, with the       *
+* leaves as the black nil nodes.  Rotating splits nothing, so no split key    *
+* changes.  The points of the two nodes rotated are taken out, the nodes are  *
+* filled from below, and the two points are pushed back down from the top.    *
+* That is O(log n) a rotation, and an update does at most three.              *
+******************************************************************************/
+    private void rotateLeft(Node node) {
+	Node child = node.right();
+	PSTPoint p = node.getPoint(), q = child.getPoint();
+	node.setPoint(null);
+	child.setPoint(null);
+	replace(node,child);
+	link(node,node.left(),child.left());
+	link(child,node,child.right());
+	restore(child,node,p,q);
+    }
+    private void rotateRight(Node node) {
+	Node child = node.left();
+	PSTPoint p = node.getPoint(), q = child.getPoint();
+	node.setPoint(null);
+	child.setPoint(null);
+	replace(node,child);
+	link(node,child.right(),node.right());
+	link(child,child.left(),node);
+	restore(child,node,p,q);
+    }
+    // After a rotation, top is the new root of the subtree, below is the
+    // node rotated down, both are empty, and p and q are their points.
+    private static void restore(Node top, Node below, PSTPoint p,
+				PSTPoint q) {
+	pullUp(below);
+	pullUp(top);
+	if(p != null) pushDown(top,p);
+	if(q != null) pushDown(top,q);
+    }
+    private void insertFixup(Node node) {
+	while(node != root && node.parent.red) {
+	    Node parent = node.parent, grand = parent.parent;
+	    if(parent == grand.left()) {
+		Node uncle = grand.right();
+		if(uncle.red) {
+		    parent.red = uncle.red = false;
+		    grand.red = true;
+		    node = grand;
+		    continue;
+		}
+		if(node == parent.right()) {
+		    rotateLeft(parent);
+		    node = parent;
+		    parent = node.parent;
+		}
+		parent.red = false;
+		grand.red = true;
+		rotateRight(grand);
+	    } else {
+		Node uncle = grand.left();
+		if(uncle.red) {
+		    parent.red = uncle.red = false;
+		    grand.red = true;
+		    node = grand;
+		    continue;
+		}
+		if(node == parent.left()) {
+		    rotateRight(parent);
+		    node = parent;
+		    parent = node.parent;
+		}
+		parent.red = false;
+		grand.red = true;
+		rotateLeft(grand);
+	    }
+	}
+	root.red = false;
+    }
+    // node is black and the paths through it are one black node short
+    private void deleteFixup(Node node) {
+	while(node != root && !node.red) {
+	    Node parent = node.parent;
+	    if(node == parent.left()) {
+		Node sibling = parent.right();
+		if(sibling.red) {
+		    sibling.red = false;
+		    parent.red = true;
+		    rotateLeft(parent);
+		    sibling = parent.right();
+		}
+		if(!isRed(sibling.left()) && !isRed(sibling.right())) {
+		    sibling.red = true;
+		    node = parent;
+		    continue;
+		}
+		if(!isRed(sibling.right())) {
+		    sibling.left().red = false;
+		    sibling.red = true;
+		    rotateRight(sibling);
+		    sibling = parent.right();
+		}
+		sibling.red = parent.red;
+		parent.red = false;
+		sibling.right().red = false;
+		rotateLeft(parent);
+	    } else {
+		Node sibling = parent.left();
+		if(sibling.red) {
+		    sibling.red = false;
+		    parent.red = true;
+		    rotateRight(parent);
+		    sibling = parent.left();
+		}
+		if(!isRed(sibling.left()) && !isRed(sibling.right())) {
+		    sibling.red = true;
+		    node = parent;
+		    continue;
+		}
+		if(!isRed(sibling.left())) {
+		    sibling.right().red = false;
+		    sibling.red = true;
+		    rotateLeft(sibling);
+		    sibling = parent.left();
+		}
+		sibling.red = parent.red;
+		parent.red = false;
+		sibling.left().red = false;
+		rotateRight(parent);
+	    }
+	    node = root;
+	}
+	node.red = false;
+    }
+    private static boolean isRed(Node node) {
+	return node != null && node.red;
+    }
+    // Puts replacement where node is in the tree.
+    private void replace(Node node, Node replacement) {
+	Node parent = node.parent;
+	replacement.parent = parent;
+	if(parent == null) root = replacement;
+	else if(parent.left() == node) parent.setLeftChild(replacement);
+	else parent.setRightChild(replacement);
+    }
+    private static void link(Node node, Node left, Node right) {
+	node.setLeftChild(left);
+	node.setRightChild(right);
+	left.parent = node;
+	right.parent = node;
+    }
+
+/******************************************************************************
+* PrioritySearchTree                                                          *
+*                                                                             *
+* As in PointerPST, except that a node may be empty, and then so is the       *
+* subtree below it.                                                           *
+******************************************************************************/
+    public List<PSTPoint> enumerate3Sided(double minX, double maxX, double minY) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>();
+	enumerate3Sided(minX,maxX,minY,points,root);
+	return points;
+    }
+    private static void enumerate3Sided(double minX, double maxX, double minY,
+					ArrayList<PSTPoint> points, Node node) {
+	if(node == null) return;
+	PSTPoint p = node.getPoint();
+	if(p == null || p.getY() < minY) return;
+	if(p.getX() >= minX && p.getX() <= maxX)
+	    points.add(p);
+	if(node.isLeaf()) return;
+	double split = node.getSplit();
+	if(split >= minX)
+	    enumerate3Sided(minX,maxX,minY,points,node.left());
+	if(split < maxX)
+	    enumerate3Sided(minX,maxX,minY,points,node.right());
+    }
+    public double maxYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	double max = maxYinRange(minX,maxX,minY,root);
+	if(max > Double.NEGATIVE_INFINITY) return max;
+	throw new NoPointsInRangeException();
+    }
+    private static double maxYinRange(double minX, double maxX, double minY,
+				      Node node) {
+	if(node == null) return Double.NEGATIVE_INFINITY;
+	PSTPoint p = node.getPoint();
+	if(p == null || p.getY() < minY) return Double.NEGATIVE_INFINITY;
+	if(p.getX() >= minX && p.getX() <= maxX) return p.getY();
+	if(node.isLeaf()) return Double.NEGATIVE_INFINITY;
+	double split = node.getSplit();
+	double max = Double.NEGATIVE_INFINITY;
+	if(split >= minX)
+	    max = maxYinRange(minX,maxX,minY,node.left());
+	if(split < maxX)
+	    max = Math.max(max,maxYinRange(minX,maxX,minY,node.right()));
+	return max;
+    }
+    public double minXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	double min = minXinRange(minX,maxX,minY,root);
+	if(min < Double.POSITIVE_INFINITY) return min;
+	throw new NoPointsInRangeException();
+    }
+    private static double minXinRange(double minX, double maxX, double minY,
+				      Node node) {
+	if(node == null) return Double.POSITIVE_INFINITY;
+	PSTPoint p = node.getPoint();
+	if(p == null || p.getY() < minY) return Double.POSITIVE_INFINITY;
+	double min = Double.POSITIVE_INFINITY;
+	if(p.getX() >= minX && p.getX() <= maxX)
+	    min = p.getX();
+	if(node.isLeaf()) return min;
+	double split = node.getSplit();
+	double minLeft = Double.POSITIVE_INFINITY;
+	if(split >= minX) {
+	    minLeft = minXinRange(minX,maxX,minY,node.left());
+	    if(minLeft < min) min = minLeft;
+	}
+	// anything found on the left beats everything on the right
+	if(split < maxX && minLeft == Double.POSITIVE_INFINITY)
+	    min = Math.min(min,minXinRange(minX,maxX,minY,node.right()));
+	return min;
+    }
+    public double maxXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	double max = maxXinRange(minX,maxX,minY,root);
+	if(max > Double.NEGATIVE_INFINITY) return max;
+	throw new NoPointsInRangeException();
+    }
+    private static double maxXinRange(double minX, double maxX, double minY,
+				      Node node) {
+	if(node == null) return Double.NEGATIVE_INFINITY;
+	PSTPoint p = node.getPoint();
+	if(p == null || p.getY() < minY) return Double.NEGATIVE_INFINITY;
+	double max = Double.NEGATIVE_INFINITY;
+	if(p.getX() >= minX && p.getX() <= maxX)
+	    max = p.getX();
+	if(node.isLeaf()) return max;
+	double split = node.getSplit();
+	double maxRight = Double.NEGATIVE_INFINITY;
+	if(split < maxX) {
+	    maxRight = maxXinRange(minX,maxX,minY,node.right());
+	    if(maxRight > max) max = maxRight;
+	}
+	// anything found on the right beats everything on the left
+	if(split >= minX && maxRight == Double.NEGATIVE_INFINITY)
+	    max = Math.max(max,maxXinRange(minX,maxX,minY,node.left()));
+	return max;
+    }
+    public double minYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	double min = minYinRange(minX,maxX,minY,root);
+	if(min < Double.POSITIVE_INFINITY) return min;
+	throw new NoPointsInRangeException();
+    }
+    private static double minYinRange(double minX, double maxX, double minY,
+				      Node node) {
+	if(node == null) return Double.POSITIVE_INFINITY;
+	PSTPoint p = node.getPoint();
+	if(p == null || p.getY() < minY) return Double.POSITIVE_INFINITY;
+	double min = Double.POSITIVE_INFINITY;
+	if(p.getX() >= minX && p.getX() <= maxX)
+	    min = p.getY();
+	if(node.isLeaf()) return min;
+	double split = node.getSplit();
+	if(split >= minX)
+	    min = Math.min(min,minYinRange(minX,maxX,minY,node.left()));
+	if(split < maxX)
+	    min = Math.min(min,minYinRange(minX,maxX,minY,node.right()));
+	return min;
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) {
+	int n = 1000000;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	Random random = new Random(0);
+	PSTPoint[] points = new PSTPoint[n];
+	for(int i = 0; i < n; i++)
+	    points[i] = new PSTPoint(random.nextDouble(),random.nextDouble());
+	DynamicPST tree = new DynamicPST();
+	StopWatch sw = new StopWatch();
+	for(PSTPoint p : points)
+	    tree.insert(p);
+	long time = sw.stop();
+	System.out.println(n + " inserts took: " + time + " ("
+			   + (long)(n/Math.max(time/1000.0,0.001))
+			   + " points/sec)");
+	sw = new StopWatch();
+	for(int i = 0; i < n; i += 2)
+	    tree.delete(points[i]);
+	System.out.println(n/2 + " deletes took: " + sw.stop());
+	System.out.println("height: " + height(tree.root) + ", size: "
+			   + tree.size());
+	ArrayList<PSTPoint> list = new ArrayList<PSTPoint>();
+	for(int i = 1; i < n; i += 2)
+	    list.add(points[i]);
+	sw = new StopWatch();
+	new PointerPST(list);
+	System.out.println("PointerPST rebuild of " + list.size()
+			   + " took: " + sw.stop());
+    }
+    private static int height(Node node) {
+	if(node == null) return 0;
+	return 1 + Math.max(height(node.left()),height(node.right()));
+    }
+}
@@ -0,0 +1,42 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    EnumerationCursor.java                                             *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   Where a 3-sided enumeration into caller-supplied buffers left      *
+*          off, so that it can be resumed once the buffers are drained.       *
+*          A cursor holds no reference to the tree or the results, so one     *
+*          cursor and one set of buffers can serve any number of queries      *
+*          without allocating.  A cursor must only be resumed against the     *
+*          tree which started it.                                             *
+*                                                                             *
+******************************************************************************/
+
+public class EnumerationCursor {
+    double xmin, xmax, ymin;
+    // the last node visited: 0 before the first, -1 after the last
+    int index = -1;
+
+    public EnumerationCursor() {
+    }
+    public EnumerationCursor(double xmin, double xmax, double ymin) {
+	reset(xmin,xmax,ymin);
+    }
+
+    // Starts a new query
+    public void reset(double xmin, double xmax, double ymin) {
+	this.xmin = xmin;
+	this.xmax = xmax;
+	this.ymin = ymin;
+	index = 0;
+    }
+    // False once every point of the query has been written out
+    public boolean hasMore() {
+	return index >= 0;
+    }
+}
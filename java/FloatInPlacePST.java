@@ -0,0 +1,325 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    FloatInPlacePST.java                                               *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   An in-place PST over float coordinates, held in two parallel       *
+*          float arrays.  The layout, construction and routing are those      *
+*          of AbstractInPlacePST, specialized so that coordinates are         *
+*          compared as float values, with no widening, boxing or              *
+*          virtual accessors.                                                 *
+*                                                                             *
+*          Generated by GenerateTypedPST from TypedInPlacePST.java.in, as     *
+*          are the other typed trees.  Edit the template, not this file.      *
+*                                                                             *
+******************************************************************************/
+
+public class FloatInPlacePST implements FloatPrioritySearchTree {
+    // Note: base 0, the node with base 1 index i is at xs[i-1],ys[i-1]
+    float[] xs, ys;
+
+    // The arrays are copied, not adopted
+    public FloatInPlacePST(float[] xs, float[] ys) {
+	if(xs.length != ys.length)
+	    throw new IllegalArgumentException("xs and ys differ in length");
+	this.xs = xs.clone();
+	this.ys = ys.clone();
+	int n = size();
+	if(n < 1) return;
+	Sort.heapSort(this.xs,this.ys,0,n-1);
+	int h = level(n);
+	for(int i = 0; i <= h-1; i++)
+	    buildLevel(i);
+    }
+
+    public int size() {
+	return xs.length;
+    }
+
+/******************************************************************************
+* Construction (see AbstractInPlacePST.buildLevel)                            *
+******************************************************************************/
+    private void buildLevel(int i) {
+	int n = size();
+	int h = level(n);
+	int A = n - (powerOf2(h) - 1);
+	int k = A/powerOf2(h-i);
+	int k1 = powerOf2(h+1-i) - 1;
+	int k2 = powerOf2(h-i) - 1 + A - k*powerOf2(h-i);
+	int k3 = powerOf2(h-i) - 1;
+	float s = xs[powerOf2(i+1)-1];
+	for(int j = 1; j <= k; j++) {
+	    int begin = powerOf2(i)+(j-1)*k1;
+	    swap(indexOfMaxY(begin,begin+k1-1),powerOf2(i)+j-1);
+	}
+	if(k < powerOf2(i)) {
+	    int begin = powerOf2(i)+k*k1;
+	    swap(indexOfMaxY(begin,begin+k2-1),powerOf2(i)+k);
+	    int m = powerOf2(i)+k*k1+k2;
+	    for(int j = 1; j <= powerOf2(i)-k-1; j++) {
+		begin = m+(j-1)*k3;
+		swap(indexOfMaxY(begin,begin+k3-1),powerOf2(i)+k+j);
+	    }
+	}
+	int zeroes = zeroesFirst(powerOf2(i+1),n,s);
+	Sort.heapSort(xs,ys,powerOf2(i+1)-1,powerOf2(i+1)+zeroes-2);
+    }
+    // base 1, see AbstractInPlacePST.zeroesFirst
+    private int zeroesFirst(int beginIndex, int endIndex, float s) {
+	int firstOne = endIndex+1;
+	for(int i = endIndex; i >= beginIndex; i--)
+	    if(!(xs[i-1] < s))
+		swap(i,--firstOne);
+	return firstOne - beginIndex;
+    }
+    private int indexOfMaxY(int beginIndex, int endIndex) { // base 1
+	int indexOfMaxY = beginIndex;
+	for(int index = beginIndex+1; index <= endIndex; index++)
+	    if(ys[index-1] > ys[indexOfMaxY-1])
+		indexOfMaxY = index;
+	return indexOfMaxY;
+    }
+    private void swap(int i, int j) { // base 1
+	float temp = xs[i-1];
+	xs[i-1] = xs[j-1];
+	xs[j-1] = temp;
+	temp = ys[i-1];
+	ys[i-1] = ys[j-1];
+	ys[j-1] = temp;
+    }
+
+/******************************************************************************
+* Query                                                                       *
+******************************************************************************/
+    // Returns the base 1 index of the highest point in the region, or 0
+    public int highestIndex3Sided(float xmin, float xmax, float ymin) {
+	if(size() < 1) return 0;
+	return highest3Sided(1,xmin,xmax,ymin,0);
+    }
+    private int highest3Sided(int index, float xmin, float xmax,
+			      float ymin, int best) {
+	float y = ys[index-1];
+	if(y < ymin || (best != 0 && y <= ys[best-1])) return best;
+	if(!mayIntersect(index,xmin,xmax)) return best;
+	float x = xs[index-1];
+	if(xmin <= x && x <= xmax) return index;
+	int indexL = 2*index;
+	if(indexL <= size())
+	    best = highest3Sided(indexL,xmin,xmax,ymin,best);
+	if(indexL+1 <= size())
+	    best = highest3Sided(indexL+1,xmin,xmax,ymin,best);
+	return best;
+    }
+
+    public float[] enumerate3Sided(float xmin, float xmax, float ymin) {
+	Pairs pairs = new Pairs();
+	if(size() > 0)
+	    enumerate3Sided(1,xmin,xmax,ymin,pairs);
+	return pairs.toArray();
+    }
+    private void enumerate3Sided(int index, float xmin, float xmax,
+				 float ymin, Pairs pairs) {
+	if(ys[index-1] < ymin) return;
+	if(!mayIntersect(index,xmin,xmax)) return;
+	float x = xs[index-1];
+	if(xmin <= x && x <= xmax)
+	    pairs.add(x,ys[index-1]);
+	int indexL = 2*index;
+	if(indexL <= size())
+	    enumerate3Sided(indexL,xmin,xmax,ymin,pairs);
+	if(indexL+1 <= size())
+	    enumerate3Sided(indexL+1,xmin,xmax,ymin,pairs);
+    }
+
+    // see AbstractInPlacePST.mayIntersect
+    private boolean mayIntersect(int index, float xmin, float xmax) {
+	int first = Integer.highestOneBit(index);
+	if(index > first && xs[index-2] > xmax)
+	    return false;
+	if(index+1 < 2*first && index+1 <= size() && xs[index] < xmin)
+	    return false;
+	return true;
+    }
+    private boolean admits(int index, float xmin, float xmax, float ymin) {
+	return ys[index-1] >= ymin && mayIntersect(index,xmin,xmax);
+    }
+
+    // a growable float[] of (x,y) pairs
+    private static class Pairs {
+	float[] data = new float[16];
+	int size = 0;
+	void add(float x, float y) {
+	    if(size + 2 > data.length)
+		data = java.util.Arrays.copyOf(data,2*data.length);
+	    data[size++] = x;
+	    data[size++] = y;
+	}
+	float[] toArray() {
+	    return java.util.Arrays.copyOf(data,size);
+	}
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: leftMostNE                                                   *
+*                                                                             *
+* PURPOSE:       Determine the point with minimum x-coordinate among          *
+*                all points {p ∈ P | xmin ≤ p.x ∧ ymin ≤ p.y}                 *
+*                                                                             *
+* RETURN:        The point as the pair {x,y}, or an empty array if there      *
+*                is none.  leftMostIndexNE finds it without allocating.       *
+*                                                                             *
+******************************************************************************/
+    public float[] leftMostNE(float xmin, float ymin) {
+	int index = leftMostIndexNE(xmin,ymin);
+	if(index == 0) return new float[0];
+	return new float[] { xs[index-1], ys[index-1] };
+    }
+
+/******************************************************************************
+* Scalar queries                                                              *
+*                                                                             *
+* Each returns the base 1 index of the point answering the query, or 0 if     *
+* there is none, and allocates nothing.  xAt and yAt read the coordinates     *
+* at such an index.  highestIndex3Sided is above.                             *
+******************************************************************************/
+    public int leftMostIndexNE(float xmin, float ymin) {
+	return leftMostIndex3Sided(xmin,Float.POSITIVE_INFINITY,ymin);
+    }
+    public int leftMostIndex3Sided(float xmin, float xmax, float ymin) {
+	return size() < 1 ? 0 : leftMost3Sided(1,xmin,xmax,ymin,0);
+    }
+    public int rightMostIndex3Sided(float xmin, float xmax, float ymin) {
+	return size() < 1 ? 0 : rightMost3Sided(1,xmin,xmax,ymin,0);
+    }
+    public int lowestIndex3Sided(float xmin, float xmax, float ymin) {
+	return size() < 1 ? 0 : lowest3Sided(1,xmin,xmax,ymin,0);
+    }
+    public float xAt(int index) { // base 1
+	return xs[index-1];
+    }
+    public float yAt(int index) { // base 1
+	return ys[index-1];
+    }
+    private int leftMost3Sided(int index, float xmin, float xmax,
+			       float ymin, int best) {
+	if(!admits(index,xmin,xmax,ymin)) return best;
+	if(best != 0 && index > Integer.highestOneBit(index) &&
+	   xs[index-2] >= xs[best-1])
+	    return best;
+	float x = xs[index-1];
+	if(xmin <= x && x <= xmax && (best == 0 || x < xs[best-1]))
+	    best = index;
+	int indexL = 2*index;
+	if(indexL <= size())
+	    best = leftMost3Sided(indexL,xmin,xmax,ymin,best);
+	if(indexL+1 <= size())
+	    best = leftMost3Sided(indexL+1,xmin,xmax,ymin,best);
+	return best;
+    }
+    private int rightMost3Sided(int index, float xmin, float xmax,
+				float ymin, int best) {
+	if(!admits(index,xmin,xmax,ymin)) return best;
+	if(best != 0 && index+1 < 2*Integer.highestOneBit(index) &&
+	   index+1 <= size() && xs[index] <= xs[best-1])
+	    return best;
+	float x = xs[index-1];
+	if(xmin <= x && x <= xmax && (best == 0 || x > xs[best-1]))
+	    best = index;
+	int indexL = 2*index;
+	if(indexL+1 <= size())
+	    best = rightMost3Sided(indexL+1,xmin,xmax,ymin,best);
+	if(indexL <= size())
+	    best = rightMost3Sided(indexL,xmin,xmax,ymin,best);
+	return best;
+    }
+    private int lowest3Sided(int index, float xmin, float xmax,
+			     float ymin, int best) {
+	if(!admits(index,xmin,xmax,ymin)) return best;
+	float x = xs[index-1];
+	if(xmin <= x && x <= xmax && (best == 0 || ys[index-1] < ys[best-1]))
+	    best = index;
+	int indexL = 2*index;
+	if(indexL <= size())
+	    best = lowest3Sided(indexL,xmin,xmax,ymin,best);
+	if(indexL+1 <= size())
+	    best = lowest3Sided(indexL+1,xmin,xmax,ymin,best);
+	return best;
+    }
+
+/******************************************************************************
+* FloatPrioritySearchTree                                                     *
+******************************************************************************/
+    public float maxYinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException {
+	int index = highestIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return ys[index-1];
+    }
+    public float minYinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException {
+	int index = lowestIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return ys[index-1];
+    }
+    public float minXinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException {
+	int index = leftMostIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return xs[index-1];
+    }
+    public float maxXinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException {
+	int index = rightMostIndex3Sided(minX,maxX,minY);
+	if(index == 0) throw new NoPointsInRangeException();
+	return xs[index-1];
+    }
+
+/******************************************************************************
+* Utility                                                                     *
+******************************************************************************/
+    private static int powerOf2(int x) {
+	return 1 << x;
+    }
+    private static int level(int index) {
+	return 31 - Integer.numberOfLeadingZeros(index);
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) throws NoPointsInRangeException {
+	int n = 15;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	float[] xs = new float[n], ys = new float[n];
+	for(int i = 0; i < n; i++) {
+	    xs[i] = i;
+	    ys[i] = n-i;
+	}
+	System.out.println("Building PST with " + n + " nodes...");
+	StopWatch sw = new StopWatch();
+	FloatInPlacePST pst = new FloatInPlacePST(xs,ys);
+	System.out.println("Took: " + sw.stop());
+	float[] p = pst.leftMostNE(3,0);
+	System.out.println("leftMostNE(x=3,y=0):                    "
+			   + "(" + p[0] + "," + p[1] + ")");
+	System.out.println("maxYinRange(xmin=4,xmax=5,ymin=0):      "
+			   + pst.maxYinRange(4,5,0));
+	System.out.println("minYinRange(xmin=4,xmax=5,ymin=0):      "
+			   + pst.minYinRange(4,5,0));
+	System.out.println("minXinRange(xmin=4,xmax=9,ymin=8):      "
+			   + pst.minXinRange(4,9,8));
+	System.out.println("maxXinRange(xmin=1,xmax=9,ymin=8):      "
+			   + pst.maxXinRange(1,9,8));
+	float[] points = pst.enumerate3Sided(1,7,-8);
+	System.out.print(  "enumerate3Sided(xmin=1,xmax=7,ymin=-8): ");
+	for(int i = 0; i < points.length; i += 2)
+	    System.out.print("(" + points[i] + "," + points[i+1] + ") ");
+	System.out.println();
+    }
+}
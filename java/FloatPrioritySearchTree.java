@@ -0,0 +1,32 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    FloatPrioritySearchTree.java                                       *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   PrioritySearchTree for float coordinates.  Points are handed       *
+*          out as (x,y) pairs packed into a float[], so nothing is boxed.     *
+*                                                                             *
+*          Generated by GenerateTypedPST from                                 *
+*          TypedPrioritySearchTree.java.in.  Edit the template, not this      *
+*          file.                                                              *
+*                                                                             *
+******************************************************************************/
+
+public interface FloatPrioritySearchTree {
+    // Returns x0,y0,x1,y1,... of every point in the region
+    public float[] enumerate3Sided(float minX, float maxX, float minY)
+	throws EmptyTreeException;
+    public float minYinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException;
+    public float minXinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException;
+    public float maxXinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException;
+    public float maxYinRange(float minX, float maxX, float minY)
+	throws NoPointsInRangeException;
+}
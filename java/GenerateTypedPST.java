@@ -0,0 +1,87 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    GenerateTypedPST.java                                              *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   Writes IntInPlacePST, LongInPlacePST and FloatInPlacePST, and      *
+*          their interfaces, from the templates TypedInPlacePST.java.in       *
+*          and TypedPrioritySearchTree.java.in, so that the typed trees       *
+*          cannot drift apart.  Run from this directory after editing a       *
+*          template:                                                          *
+*                                                                             *
+*            javac GenerateTypedPST.java && java GenerateTypedPST             *
+*                                                                             *
+*          In the templates $type$ is the coordinate type, $Type$ the         *
+*          prefix of the class names, and $MAX$ the greatest coordinate.      *
+*          Comment boxes are re-padded to 79 columns after substitution.      *
+*                                                                             *
+******************************************************************************/
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+public class GenerateTypedPST {
+    private static final String[][] TYPES = {
+	// $type$, $Type$, $MAX$
+	{ "int", "Int", "Integer.MAX_VALUE" },
+	{ "long", "Long", "Long.MAX_VALUE" },
+	{ "float", "Float", "Float.POSITIVE_INFINITY" },
+    };
+    private static final String[][] TEMPLATES = {
+	// template, generated file with $Type$ substituted
+	{ "TypedInPlacePST.java.in", "$Type$InPlacePST.java" },
+	{ "TypedPrioritySearchTree.java.in", "$Type$PrioritySearchTree.java" },
+    };
+    private static final int WIDTH = 79;
+
+    private GenerateTypedPST() {}
+
+    public static void main(String[] args) throws IOException {
+	Path dir = Paths.get(args.length > 0 ? args[0] : ".");
+	for(String[] template : TEMPLATES) {
+	    String text = new String(Files.readAllBytes(dir.resolve(template[0])),
+				     StandardCharsets.UTF_8);
+	    for(String[] type : TYPES) {
+		Path out = dir.resolve(substitute(template[1],type));
+		Files.write(out,generate(text,type).getBytes(StandardCharsets.UTF_8));
+		System.out.println("Wrote " + out);
+	    }
+	}
+    }
+    static String generate(String template, String[] type) {
+	StringBuilder out = new StringBuilder();
+	for(String line : template.split("\n",-1)) {
+	    String generated = substitute(line,type);
+	    if(!generated.equals(line) && isBoxLine(line))
+		generated = pad(generated);
+	    out.append(generated).append('\n');
+	}
+	// split leaves one empty string after the last newline
+	out.setLength(out.length()-1);
+	return out.toString();
+    }
+    private static String substitute(String s, String[] type) {
+	return s.replace("$type$",type[0]).replace("$Type$",type[1])
+	    .replace("$MAX$",type[2]);
+    }
+    // a line of a comment box, "* text   *", but not a rule of stars
+    private static boolean isBoxLine(String line) {
+	return line.length() > 2 && line.startsWith("* ")
+	    && line.endsWith("*");
+    }
+    private static String pad(String line) {
+	String text = line.substring(0,line.length()-1).replaceAll("\\s+$","");
+	if(text.length() >= WIDTH-1)
+	    throw new IllegalStateException("too long for a box: " + text);
+	StringBuilder padded = new StringBuilder(text);
+	while(padded.length() < WIDTH-1)
+	    padded.append(' ');
+	return padded.append('*').toString();
+    }
+}
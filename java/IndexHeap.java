@@ -0,0 +1,75 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    IndexHeap.java                                                     *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   A growable binary max-heap of array indices keyed by a double,     *
+*          so that queries can visit nodes in order of y without boxing.      *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+
+public class IndexHeap {
+    private int[] indices;
+    private double[] keys;
+    private int size;
+
+    public IndexHeap() {
+	this(16);
+    }
+    public IndexHeap(int capacity) {
+	indices = new int[Math.max(capacity,1)];
+	keys = new double[indices.length];
+    }
+
+    public void add(int index, double key) {
+	if(size == indices.length) {
+	    indices = Arrays.copyOf(indices,2*size);
+	    keys = Arrays.copyOf(keys,2*size);
+	}
+	// move parents down until key fits
+	int v = size++;
+	while(v > 0 && keys[(v-1)/2] < key) {
+	    indices[v] = indices[(v-1)/2];
+	    keys[v] = keys[(v-1)/2];
+	    v = (v-1)/2;
+	}
+	indices[v] = index;
+	keys[v] = key;
+    }
+    // Removes and returns the index with the highest key
+    public int removeMax() {
+	if(size == 0) throw new NoSuchElementException();
+	int max = indices[0];
+	size--;
+	int index = indices[size];
+	double key = keys[size];
+	// move children up until the last element fits
+	int v = 0, w = 1;
+	while(w < size) {
+	    if(w+1 < size && keys[w+1] > keys[w])
+		w++;
+	    if(!(keys[w] > key))
+		break;
+	    indices[v] = indices[w];
+	    keys[v] = keys[w];
+	    v = w;
+	    w = 2*v+1;
+	}
+	indices[v] = index;
+	keys[v] = key;
+	return max;
+    }
+    public int size() {
+	return size;
+    }
+    public void clear() {
+	size = 0;
+    }
+}
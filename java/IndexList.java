@@ -4,30 +4,40 @@
 *                         (All rights reserved)                               *
 *******************************************************************************
 *                                                                             *
-* FILE:    ArrayPSTNode.java                                                  *
+* FILE:    IndexList.java                                                     *
 *                                                                             *
 * MODULE:  Priority Search Tree                                               *
 *                                                                             *
-* NOTES:   See README for more information.                                   *
-*                                                                             *
-*          See LICENSE for license information.                               *
+* NOTES:   A growable list of array indices, so that queries can collect      *
+*          the positions of their results without boxing.                     *
 *                                                                             *
 ******************************************************************************/
 
-import java.awt.geom.*;
+import java.util.*;
 
-public class ArrayPSTNode {
-    private PSTPoint p;
+public class IndexList {
+    private int[] indices;
+    private int size;
 
-    public ArrayPSTNode(double x, double y) {
-	this(new PSTPoint(x,y));
+    public IndexList() {
+	this(16);
     }
-
-    public ArrayPSTNode(PSTPoint p) {
-	this.p = p;
+    public IndexList(int capacity) {
+	indices = new int[Math.max(capacity,1)];
     }
 
-    public double getX() { return p.getX(); }
-    public double getY() { return p.getY(); }
-    public PSTPoint getPoint() { return p; }
-}
\ No newline at end of file
+    public void add(int index) {
+	if(size == indices.length)
+	    indices = Arrays.copyOf(indices,2*size);
+	indices[size++] = index;
+    }
+    public int get(int i) {
+	return indices[i];
+    }
+    public int size() {
+	return size;
+    }
+    public void clear() {
+	size = 0;
+    }
+}
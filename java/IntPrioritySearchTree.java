@@ -0,0 +1,32 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    IntPrioritySearchTree.java                                         *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   PrioritySearchTree for int coordinates.  Points are handed         *
+*          out as (x,y) pairs packed into a int[], so nothing is boxed.       *
+*                                                                             *
+*          Generated by GenerateTypedPST from                                 *
+*          TypedPrioritySearchTree.java.in.  Edit the template, not this      *
+*          file.                                                              *
+*                                                                             *
+******************************************************************************/
+
+public interface IntPrioritySearchTree {
+    // Returns x0,y0,x1,y1,... of every point in the region
+    public int[] enumerate3Sided(int minX, int maxX, int minY)
+	throws EmptyTreeException;
+    public int minYinRange(int minX, int maxX, int minY)
+	throws NoPointsInRangeException;
+    public int minXinRange(int minX, int maxX, int minY)
+	throws NoPointsInRangeException;
+    public int maxXinRange(int minX, int maxX, int minY)
+	throws NoPointsInRangeException;
+    public int maxYinRange(int minX, int maxX, int minY)
+	throws NoPointsInRangeException;
+}
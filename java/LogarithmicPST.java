@@ -0,0 +1,280 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    LogarithmicPST.java                                                *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   Takes inserts into static InPlacePSTs by the logarithmic method    *
+*          of Bentley and Saxe.                                               *
+*                                                                             *
+*          New points go to a small buffer.  When it is full, it becomes a    *
+*          level: level i is either empty or an InPlacePST of exactly         *
+*          bufferSize * 2^i points, and a full buffer is rebuilt together     *
+*          with levels 0..k-1 into level k, the lowest empty one, as in       *
+*          binary addition.  Each point is rebuilt at most once per level,    *
+*          and there are O(log n) levels.  All but the buffer keeps the       *
+*          compact layout of InPlacePST.                                      *
+*                                                                             *
+*          Queries ask every level and the buffer, and combine the answers.   *
+*                                                                             *
+*          Given a pool, rebuilds run on it in the background while inserts   *
+*          go on into a fresh buffer and queries go on using the old          *
+*          levels.  An insert only waits if the fresh buffer fills before     *
+*          the rebuild is done.  Inserts and queries are not safe to run      *
+*          concurrently with each other.                                      *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class LogarithmicPST implements PrioritySearchTree {
+    // default number of points buffered before a rebuild
+    static final int BUFFER_SIZE = 1 << 10;
+    // levels[i] is null or holds buffer.length << i points
+    private InPlacePST[] levels = new InPlacePST[0];
+    private PSTPoint[] buffer;
+    private int buffered;
+    private int size;
+    // background rebuilds, or null to rebuild in insert
+    private final ForkJoinPool pool;
+    // the rebuild running, of frozen and levels 0..merging-1 into level
+    // merging, or null
+    private ForkJoinTask<InPlacePST> rebuild;
+    private PSTPoint[] frozen;
+    private int merging;
+
+    public LogarithmicPST() {
+	this(null);
+    }
+    public LogarithmicPST(ForkJoinPool pool) {
+	this(pool,BUFFER_SIZE);
+    }
+    public LogarithmicPST(ForkJoinPool pool, int bufferSize) {
+	if(bufferSize < 1)
+	    throw new IllegalArgumentException("bufferSize < 1");
+	this.pool = pool;
+	buffer = new PSTPoint[bufferSize];
+    }
+    public int size() {
+	return size;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: insert                                                       *
+*                                                                             *
+* PURPOSE:       Adds a point.  Amortized, O(log n) rebuilds of each point,   *
+*                each costing what InPlacePST's build costs per point.        *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   PSTPoint/p                                                   *
+*   Description: The point to add.                                            *
+*                                                                             *
+* RETURN:        Nothing.                                                     *
+*                                                                             *
+******************************************************************************/
+    public void insert(PSTPoint p) {
+	if(rebuild != null && rebuild.isDone())
+	    finishRebuild();
+	buffer[buffered++] = p;
+	size++;
+	if(buffered < buffer.length) return;
+	if(rebuild != null)
+	    finishRebuild();
+	int k = 0;
+	while(k < levels.length && levels[k] != null)
+	    k++;
+	if(k == levels.length)
+	    levels = Arrays.copyOf(levels,k+1);
+	final PSTPoint[] points = buffer;
+	final InPlacePST[] merged = Arrays.copyOf(levels,k);
+	if(pool == null) {
+	    levels[k] = build(points,merged);
+	    Arrays.fill(levels,0,k,null);
+	    buffered = 0;
+	    return;
+	}
+	frozen = points;
+	merging = k;
+	buffer = new PSTPoint[points.length];
+	buffered = 0;
+	rebuild = pool.submit(new Callable<InPlacePST>() {
+		public InPlacePST call() {
+		    return build(points,merged);
+		}
+	    });
+    }
+    // Waits for the rebuild running and puts its level in place.
+    private void finishRebuild() {
+	InPlacePST level = rebuild.join();
+	levels[merging] = level;
+	Arrays.fill(levels,0,merging,null);
+	rebuild = null;
+	frozen = null;
+    }
+    private static InPlacePST build(PSTPoint[] buffer, InPlacePST[] levels) {
+	int n = buffer.length;
+	for(InPlacePST level : levels)
+	    n += level.tree.length;
+	PSTPoint[] points = Arrays.copyOf(buffer,n);
+	n = buffer.length;
+	for(InPlacePST level : levels) {
+	    System.arraycopy(level.tree,0,points,n,level.tree.length);
+	    n += level.tree.length;
+	}
+	return new InPlacePST(points);
+    }
+
+/******************************************************************************
+* Queries                                                                     *
+*                                                                             *
+* Every level is asked with the queries of InPlacePST, none of which          *
+* allocates, or its iterator when enumerating, and the buffers are scanned.   *
+******************************************************************************/
+    public List<PSTPoint> enumerate3Sided(double minX, double maxX, double minY) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>();
+	for(InPlacePST level : levels) {
+	    if(level == null) continue;
+	    Iterator<PSTPoint> found = level.iterate3Sided(minX,maxX,minY);
+	    while(found.hasNext())
+		points.add(found.next());
+	}
+	if(frozen != null)
+	    scan(frozen,frozen.length,minX,maxX,minY,points);
+	scan(buffer,buffered,minX,maxX,minY,points);
+	return points;
+    }
+    private static void scan(PSTPoint[] buffer, int count, double minX,
+			     double maxX, double minY, List<PSTPoint> points) {
+	for(int i = 0; i < count; i++) {
+	    PSTPoint p = buffer[i];
+	    if(p.getX() >= minX && p.getX() <= maxX && p.getY() >= minY)
+		points.add(p);
+	}
+    }
+    // Returns the highest point of the query, or (+∞,-∞) if there is
+    // none, as the in-place trees do.
+    public PSTPoint highest3Sided(double minX, double maxX, double minY) {
+	PSTPoint best = PSTPoint.NONE_HIGHEST;
+	for(InPlacePST level : levels) {
+	    if(level == null) continue;
+	    PSTPoint p = level.highest3Sided(minX,maxX,minY);
+	    if(p.getY() > best.getY()) best = p;
+	}
+	best = highest(frozen,frozen == null ? 0 : frozen.length,
+		       minX,maxX,minY,best);
+	return highest(buffer,buffered,minX,maxX,minY,best);
+    }
+    private static PSTPoint highest(PSTPoint[] buffer, int count, double minX,
+				    double maxX, double minY, PSTPoint best) {
+	for(int i = 0; i < count; i++) {
+	    PSTPoint p = buffer[i];
+	    if(p.getX() >= minX && p.getX() <= maxX && p.getY() >= minY
+	       && p.getY() > best.getY())
+		best = p;
+	}
+	return best;
+    }
+    public double maxYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	PSTPoint p = highest3Sided(minX,maxX,minY);
+	if(p.getY() == Double.NEGATIVE_INFINITY)
+	    throw new NoPointsInRangeException();
+	return p.getY();
+    }
+    // For each of the other queries, the least of some value of the
+    // points found; maxXinRange negates x.
+    private static final int MIN_X = 0, MAX_X = 1, MIN_Y = 2;
+    public double minXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	return least(MIN_X,minX,maxX,minY);
+    }
+    public double maxXinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	return -least(MAX_X,minX,maxX,minY);
+    }
+    public double minYinRange(double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	return least(MIN_Y,minX,maxX,minY);
+    }
+    private double least(int query, double minX, double maxX, double minY)
+	throws NoPointsInRangeException {
+	// NaN until a point is found
+	double least = Double.NaN;
+	for(InPlacePST level : levels) {
+	    if(level == null) continue;
+	    int index = query == MIN_X ?
+		level.leftMostIndex3Sided(minX,maxX,minY)
+		: query == MAX_X ? level.rightMostIndex3Sided(minX,maxX,minY)
+		: level.lowestIndex3Sided(minX,maxX,minY);
+	    if(index == 0) continue;
+	    double value = query == MIN_X ? level.xAt(index)
+		: query == MAX_X ? -level.xAt(index) : level.yAt(index);
+	    if(!(value >= least)) least = value;
+	}
+	if(frozen != null)
+	    least = least(query,frozen,frozen.length,minX,maxX,minY,least);
+	least = least(query,buffer,buffered,minX,maxX,minY,least);
+	if(Double.isNaN(least)) throw new NoPointsInRangeException();
+	return least;
+    }
+    private static double least(int query, PSTPoint[] buffer, int count,
+				double minX, double maxX, double minY,
+				double least) {
+	for(int i = 0; i < count; i++) {
+	    PSTPoint p = buffer[i];
+	    if(p.getX() < minX || p.getX() > maxX || p.getY() < minY)
+		continue;
+	    double value = query == MIN_X ? p.getX()
+		: query == MAX_X ? -p.getX() : p.getY();
+	    if(!(value >= least)) least = value;
+	}
+	return least;
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) throws Exception {
+	int n = 1000000;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	Random random = new Random(0);
+	PSTPoint[] points = new PSTPoint[n];
+	for(int i = 0; i < n; i++)
+	    points[i] = new PSTPoint(random.nextDouble(),random.nextDouble());
+	ForkJoinPool[] pools = { null, ForkJoinPool.commonPool() };
+	for(ForkJoinPool pool : pools) {
+	    LogarithmicPST tree = new LogarithmicPST(pool);
+	    StopWatch sw = new StopWatch();
+	    for(PSTPoint p : points)
+		tree.insert(p);
+	    long time = sw.stop();
+	    System.out.println(n + " inserts"
+			       + (pool == null ? "" : " in the background")
+			       + " took: " + time + " ("
+			       + (long)(n/Math.max(time/1000.0,0.001))
+			       + " points/sec)");
+	    int levels = 0;
+	    for(InPlacePST level : tree.levels)
+		if(level != null) levels++;
+	    System.out.println("levels: " + levels + ", buffered: "
+			       + tree.buffered);
+	    sw = new StopWatch();
+	    int found = 0;
+	    for(int j = 0; j < 10000; j++) {
+		double x = random.nextDouble();
+		found += tree.enumerate3Sided(x,x+0.01,0.5).size();
+	    }
+	    System.out.println("10000 queries took: " + sw.stop()
+			       + ", found " + found);
+	}
+	StopWatch sw = new StopWatch();
+	new InPlacePST(points);
+	System.out.println("one InPlacePST of all points took: " + sw.stop());
+    }
+}
@@ -0,0 +1,32 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    LongPrioritySearchTree.java                                        *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   PrioritySearchTree for long coordinates.  Points are handed        *
+*          out as (x,y) pairs packed into a long[], so nothing is boxed.      *
+*                                                                             *
+*          Generated by GenerateTypedPST from                                 *
+*          TypedPrioritySearchTree.java.in.  Edit the template, not this      *
+*          file.                                                              *
+*                                                                             *
+******************************************************************************/
+
+public interface LongPrioritySearchTree {
+    // Returns x0,y0,x1,y1,... of every point in the region
+    public long[] enumerate3Sided(long minX, long maxX, long minY)
+	throws EmptyTreeException;
+    public long minYinRange(long minX, long maxX, long minY)
+	throws NoPointsInRangeException;
+    public long minXinRange(long minX, long maxX, long minY)
+	throws NoPointsInRangeException;
+    public long maxXinRange(long minX, long maxX, long minY)
+	throws NoPointsInRangeException;
+    public long maxYinRange(long minX, long maxX, long minY)
+	throws NoPointsInRangeException;
+}
@@ -1,3 +1,7 @@
     public class NoPointsInRangeException extends Exception {
-	public NoPointsInRangeException() { super("No points in range"); }
+	// Thrown whenever a query finds nothing, which is common, so it
+	// does not pay to fill in a stack trace.
+	public NoPointsInRangeException() {
+	    super("No points in range",null,false,false);
+	}
     }
\ No newline at end of file
@@ -0,0 +1,190 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    OffHeapInPlacePST.java                                             *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   An in-place PST kept outside the Java heap, in direct byte         *
+*          buffers.  Node i (base 1) is stored as the pair of little          *
+*          endian doubles (x,y) at byte offset 16*(i-1), so both              *
+*          coordinates of a node share a cache line.                          *
+*                                                                             *
+*          A single buffer cannot exceed 2^31 bytes, so the nodes are         *
+*          spread over chunks of 2^CHUNK_SHIFT nodes each.                    *
+*                                                                             *
+*          A tree mapped by PSTFile may also have an id for each node, as     *
+*          a little endian long, in chunks of the same number of nodes.       *
+*                                                                             *
+******************************************************************************/
+
+import java.nio.*;
+
+public class OffHeapInPlacePST extends AbstractInPlacePST {
+    static final int NODE_BYTES = 16;
+    static final int ID_BYTES = 8;
+    // 2^26 nodes, i.e. 1 GiB per chunk
+    static final int CHUNK_SHIFT = 26;
+    static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final ByteBuffer[] chunks;
+    // the ids of the nodes, or null if there are none
+    private final ByteBuffer[] idChunks;
+    private final int n;
+
+    public OffHeapInPlacePST(PSTPoint[] points) {
+	this.n = points.length;
+	this.chunks = allocateChunks(n);
+	this.idChunks = null;
+	for(int i = 0; i < n; i++)
+	    setPoint(i+1,points[i].getX(),points[i].getY());
+	build();
+    }
+    // Wraps chunks which already hold a finished tree of n nodes, and
+    // idChunks their ids, or null
+    OffHeapInPlacePST(ByteBuffer[] chunks, ByteBuffer[] idChunks, int n) {
+	for(int i = 0; i < chunks.length; i++)
+	    chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+	if(idChunks != null)
+	    for(int i = 0; i < idChunks.length; i++)
+		idChunks[i].order(ByteOrder.LITTLE_ENDIAN);
+	this.chunks = chunks;
+	this.idChunks = idChunks;
+	this.n = n;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: copyOf                                                       *
+*                                                                             *
+* PURPOSE:       Moves a tree which has already been built on the heap        *
+*                (e.g. a PrimitiveInPlacePST) off the heap.  Building on      *
+*                the heap first is considerably faster than building          *
+*                through the buffers.                                         *
+*                                                                             *
+******************************************************************************/
+    public static OffHeapInPlacePST copyOf(AbstractInPlacePST tree) {
+	int n = tree.size();
+	OffHeapInPlacePST copy = new OffHeapInPlacePST(allocateChunks(n),null,n);
+	for(int i = 1; i <= n; i++)
+	    copy.setPoint(i,tree.getX(i),tree.getY(i));
+	return copy;
+    }
+
+    private static ByteBuffer[] allocateChunks(int n) {
+	int nChunks = (n + CHUNK_MASK) >>> CHUNK_SHIFT;
+	ByteBuffer[] chunks = new ByteBuffer[nChunks];
+	for(int c = 0; c < nChunks; c++) {
+	    int nodes = Math.min(n - (c << CHUNK_SHIFT), 1 << CHUNK_SHIFT);
+	    chunks[c] = ByteBuffer.allocateDirect(nodes*NODE_BYTES)
+		.order(ByteOrder.LITTLE_ENDIAN);
+	}
+	return chunks;
+    }
+
+/******************************************************************************
+* Storage                                                                     *
+******************************************************************************/
+    public int size() {
+	return n;
+    }
+    protected double getX(int index) { // base 1
+	return chunk(index).getDouble(offset(index));
+    }
+    protected double getY(int index) { // base 1
+	return chunk(index).getDouble(offset(index) + 8);
+    }
+    private void setPoint(int index, double x, double y) { // base 1
+	ByteBuffer chunk = chunk(index);
+	int offset = offset(index);
+	chunk.putDouble(offset,x);
+	chunk.putDouble(offset + 8,y);
+    }
+    protected void swap(int i, int j) { // base 1
+	double x = getX(i), y = getY(i);
+	setPoint(i,getX(j),getY(j));
+	setPoint(j,x,y);
+    }
+    private ByteBuffer chunk(int index) {
+	return chunks[(index-1) >>> CHUNK_SHIFT];
+    }
+    private static int offset(int index) {
+	return ((index-1) & CHUNK_MASK) * NODE_BYTES;
+    }
+
+/******************************************************************************
+* Ids                                                                         *
+*                                                                             *
+* As InPlacePST.enumerate3SidedIds, for a tree mapped with ids.               *
+******************************************************************************/
+    public boolean hasIds() {
+	return idChunks != null;
+    }
+    public long idAt(int index) { // base 1
+	if(idChunks == null)
+	    throw new IllegalStateException("tree has no ids");
+	return idChunks[(index-1) >>> CHUNK_SHIFT]
+	    .getLong(((index-1) & CHUNK_MASK) * ID_BYTES);
+    }
+    public long[] enumerate3SidedIds(double xmin, double xmax, double ymin) {
+	if(idChunks == null)
+	    throw new IllegalStateException("tree has no ids");
+	IndexList indices = enumerate3SidedIndices(xmin,xmax,ymin);
+	long[] found = new long[indices.size()];
+	for(int i = 0; i < found.length; i++)
+	    found[i] = idAt(indices.get(i));
+	return found;
+    }
+    public int enumerate3SidedIds(EnumerationCursor cursor, long[] found) {
+	if(idChunks == null)
+	    throw new IllegalStateException("tree has no ids");
+	int count = 0;
+	int index = cursor.index;
+	while(index >= 0 && count < found.length) {
+	    index = next3Sided(index,cursor.xmin,cursor.xmax,cursor.ymin);
+	    if(index < 0) break;
+	    double x = getX(index);
+	    if(cursor.xmin <= x && x <= cursor.xmax)
+		found[count++] = idAt(index);
+	}
+	cursor.index = index;
+	return count;
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) {
+	int n = 15;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	System.out.println("Creating points...");
+	PSTPoint[] testPoints = new PSTPoint[n];
+	for(int i = 0; i < n ; i++)
+	    testPoints[i] = new PSTPoint(i,n-i);
+	System.out.println("Building PST with " + n + " nodes...");
+	StopWatch sw = new StopWatch();
+	OffHeapInPlacePST pst = new OffHeapInPlacePST(testPoints);
+	long time = sw.stop();
+	System.out.println("Built off heap, took: " + time);
+	sw = new StopWatch();
+	OffHeapInPlacePST copy =
+	    OffHeapInPlacePST.copyOf(new PrimitiveInPlacePST(testPoints));
+	time = sw.stop();
+	System.out.println("Built on heap and copied, took: " + time);
+	if(n < 20) {
+	    System.out.print("PST: "); pst.printArray();
+	    System.out.print("Copy: "); copy.printArray();
+	}
+	System.out.println("leftMostNE(x=-10,y=-10):                "
+			   + pst.leftMostNE(-10,-10));
+	System.out.println("highestNE(x=1,y=-10):                   "
+			   + pst.highestNE(1,-10));
+	System.out.println("highest3Sided(xmin=4,xmax=5,ymin=0):    "
+			   + pst.highest3Sided(4,5,0));
+	System.out.print(  "enumerate3Sided(xmin=1,xmax=7,ymin=-8): ");
+	InPlacePST.printArray(pst.enumerate3Sided(1,7,-8).toArray(new PSTPoint[0]));
+    }
+}
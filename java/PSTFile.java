@@ -0,0 +1,255 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    PSTFile.java                                                       *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   On-disk format for a finished in-place PST, so that it can be      *
+*          memory-mapped and queried without being rebuilt or even read.      *
+*                                                                             *
+*          All values are little endian.                                      *
+*                                                                             *
+*          offset  size  field                                                *
+*          ------  ----  -----                                                *
+*               0     4  magic, the bytes "PST1"                              *
+*               4     4  format version                                       *
+*               8     4  coordinate type (TYPE_DOUBLE)                        *
+*              12     4  bytes per node                                       *
+*              16     8  number of points n                                   *
+*              24     8  CRC-32 of the n nodes                                *
+*              32     4  flags, one bit per optional section after the        *
+*                        nodes; FLAG_IDS if the ids section is present        *
+*              36     4  reserved, 0                                          *
+*              40     8  CRC-32 of the optional sections, 0 if there are      *
+*                        none                                                 *
+*              48  16*n  nodes in base 1 index order, each one the pair       *
+*                        of doubles (x,y), exactly as OffHeapInPlacePST       *
+*                        lays them out                                        *
+*          48+16*n  8*n  optional ids section: the id of each node, as a      *
+*                        long, in the same order as the nodes                 *
+*                                                                             *
+******************************************************************************/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+public class PSTFile {
+    static final int MAGIC = 0x31545350; // "PST1" read as little endian
+    static final int VERSION = 1;
+    static final int TYPE_DOUBLE = 1;
+    static final int HEADER_BYTES = 48;
+    static final int FLAG_IDS = 1;
+
+    private PSTFile() {}
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: write                                                        *
+*                                                                             *
+* PURPOSE:       Writes a finished tree to the given file, replacing          *
+*                anything already there.  An InPlacePST built with ids        *
+*                has its ids written too.                                     *
+*                                                                             *
+******************************************************************************/
+    public static void write(AbstractInPlacePST tree, Path path)
+	throws IOException {
+	int n = tree.size();
+	// ids[i-1] is the id of node i, or null to write no ids
+	long[] ids = tree instanceof InPlacePST ? ((InPlacePST)tree).ids : null;
+	try(FileChannel channel =
+	    FileChannel.open(path,StandardOpenOption.CREATE,
+			     StandardOpenOption.WRITE,
+			     StandardOpenOption.TRUNCATE_EXISTING)) {
+	    CRC32 crc = new CRC32();
+	    ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16)
+		.order(ByteOrder.LITTLE_ENDIAN);
+	    channel.position(HEADER_BYTES);
+	    for(int i = 1; i <= n; i++) {
+		if(buffer.remaining() < OffHeapInPlacePST.NODE_BYTES)
+		    flush(channel,buffer,crc);
+		buffer.putDouble(tree.getX(i));
+		buffer.putDouble(tree.getY(i));
+	    }
+	    flush(channel,buffer,crc);
+	    CRC32 idCrc = new CRC32();
+	    if(ids != null) {
+		for(int i = 0; i < n; i++) {
+		    if(buffer.remaining() < OffHeapInPlacePST.ID_BYTES)
+			flush(channel,buffer,idCrc);
+		    buffer.putLong(ids[i]);
+		}
+		flush(channel,buffer,idCrc);
+	    }
+	    // the header goes last, so a partly written file has no valid magic
+	    buffer.putInt(MAGIC);
+	    buffer.putInt(VERSION);
+	    buffer.putInt(TYPE_DOUBLE);
+	    buffer.putInt(OffHeapInPlacePST.NODE_BYTES);
+	    buffer.putLong(n);
+	    buffer.putLong(crc.getValue());
+	    buffer.putInt(ids != null ? FLAG_IDS : 0);
+	    buffer.putInt(0); // reserved
+	    buffer.putLong(ids != null ? idCrc.getValue() : 0);
+	    buffer.flip();
+	    channel.position(0);
+	    while(buffer.hasRemaining())
+		channel.write(buffer);
+	    channel.force(true);
+	}
+    }
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc)
+	throws IOException {
+	buffer.flip();
+	crc.update(buffer.duplicate());
+	while(buffer.hasRemaining())
+	    channel.write(buffer);
+	buffer.clear();
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: map                                                          *
+*                                                                             *
+* PURPOSE:       Maps a file written by write() and returns a tree which      *
+*                answers queries straight from the mapped pages.  Only the    *
+*                header is read; pages are faulted in as queries touch        *
+*                them.  If the file has ids, they are mapped too, and         *
+*                idAt and enumerate3SidedIds of the tree read them.           *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   boolean/verify                                               *
+*   Description: If true, every page is read once to check the CRC-32s.       *
+*                                                                             *
+******************************************************************************/
+    public static OffHeapInPlacePST map(Path path) throws IOException {
+	return map(path,false);
+    }
+    public static OffHeapInPlacePST map(Path path, boolean verify)
+	throws IOException {
+	try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)) {
+	    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+		.order(ByteOrder.LITTLE_ENDIAN);
+	    readFully(channel,header,path);
+	    header.flip();
+	    if(header.getInt() != MAGIC)
+		throw new IOException(path + ": not a PST file");
+	    int version = header.getInt();
+	    if(version != VERSION)
+		throw new IOException(path + ": unsupported version " + version);
+	    int type = header.getInt();
+	    if(type != TYPE_DOUBLE)
+		throw new IOException(path + ": unsupported coordinate type " + type);
+	    if(header.getInt() != OffHeapInPlacePST.NODE_BYTES)
+		throw new IOException(path + ": unexpected node size");
+	    long n = header.getLong();
+	    long checksum = header.getLong();
+	    int flags = header.getInt();
+	    header.getInt(); // reserved
+	    long idChecksum = header.getLong();
+	    if((flags & ~FLAG_IDS) != 0)
+		throw new IOException(path + ": unknown flags " + flags);
+	    if(n < 0 || n > Integer.MAX_VALUE)
+		throw new IOException(path + ": bad point count " + n);
+	    long nodesEnd = HEADER_BYTES + n*OffHeapInPlacePST.NODE_BYTES;
+	    long end = nodesEnd;
+	    if((flags & FLAG_IDS) != 0)
+		end += n*OffHeapInPlacePST.ID_BYTES;
+	    if(channel.size() != end)
+		throw new IOException(path + ": size does not match point count");
+	    // the mappings stay valid after the channel is closed
+	    ByteBuffer[] chunks = map(channel,HEADER_BYTES,n,
+				      OffHeapInPlacePST.NODE_BYTES);
+	    ByteBuffer[] idChunks = (flags & FLAG_IDS) == 0 ? null
+		: map(channel,nodesEnd,n,OffHeapInPlacePST.ID_BYTES);
+	    if(verify) {
+		if(crc(chunks) != checksum)
+		    throw new IOException(path + ": checksum mismatch");
+		if(idChunks != null && crc(idChunks) != idChecksum)
+		    throw new IOException(path + ": checksum mismatch in ids");
+	    }
+	    return new OffHeapInPlacePST(chunks,idChunks,(int)n);
+	}
+    }
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+				  Path path) throws IOException {
+	while(buffer.hasRemaining())
+	    if(channel.read(buffer) < 0)
+		throw new IOException(path + ": truncated header");
+    }
+    // Maps n records of the given size starting at position, in chunks of
+    // 2^CHUNK_SHIFT records as OffHeapInPlacePST expects
+    private static ByteBuffer[] map(FileChannel channel, long position, long n,
+				    int recordBytes) throws IOException {
+	int shift = OffHeapInPlacePST.CHUNK_SHIFT;
+	int nChunks = (int)((n + OffHeapInPlacePST.CHUNK_MASK) >>> shift);
+	ByteBuffer[] chunks = new ByteBuffer[nChunks];
+	for(int c = 0; c < nChunks; c++) {
+	    long records = Math.min(n - ((long)c << shift), 1L << shift);
+	    chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+				    position + ((long)c << shift)*recordBytes,
+				    records*recordBytes);
+	}
+	return chunks;
+    }
+    private static long crc(ByteBuffer[] chunks) {
+	CRC32 crc = new CRC32();
+	for(ByteBuffer chunk : chunks)
+	    crc.update(chunk.duplicate());
+	return crc.getValue();
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) throws IOException {
+	int n = 15;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	PSTPoint[] testPoints = new PSTPoint[n];
+	for(int i = 0; i < n ; i++)
+	    testPoints[i] = new PSTPoint(i,n-i);
+	Path path = Files.createTempFile("pst",".bin");
+	try {
+	    System.out.println("Building PST with " + n + " nodes...");
+	    StopWatch sw = new StopWatch();
+	    PrimitiveInPlacePST pst = new PrimitiveInPlacePST(testPoints);
+	    System.out.println("Took: " + sw.stop());
+	    sw = new StopWatch();
+	    write(pst,path);
+	    System.out.println("Writing took: " + sw.stop());
+	    sw = new StopWatch();
+	    OffHeapInPlacePST mapped = map(path);
+	    System.out.println("Mapping took: " + sw.stop());
+	    sw = new StopWatch();
+	    map(path,true);
+	    System.out.println("Mapping with verification took: " + sw.stop());
+	    if(n < 20) {
+		System.out.print("PST: "); mapped.printArray();
+	    }
+	    System.out.println("highest3Sided(xmin=4,xmax=5,ymin=0):    "
+			       + mapped.highest3Sided(4,5,0));
+	    System.out.print(  "enumerate3Sided(xmin=1,xmax=7,ymin=-8): ");
+	    InPlacePST.printArray(mapped.enumerate3Sided(1,7,-8)
+				  .toArray(new PSTPoint[0]));
+	    // an InPlacePST with ids, the id of (i,n-i) being 1000+i
+	    long[] ids = new long[n];
+	    for(int i = 0; i < n; i++)
+		ids[i] = 1000 + i;
+	    write(new InPlacePST(testPoints,ids),path);
+	    mapped = map(path,true);
+	    System.out.print(  "ids of enumerate3Sided(1,7,-8):         ");
+	    long[] found = mapped.enumerate3SidedIds(1,7,-8);
+	    for(int i = 0; i < found.length; i++)
+		System.out.print(found[i] + " ");
+	    System.out.println();
+	} finally {
+	    Files.delete(path);
+	}
+    }
+}
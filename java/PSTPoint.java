@@ -17,6 +17,13 @@
 import java.awt.geom.*;
 
 public class PSTPoint implements Comparable<PSTPoint> {
+    // What highest3Sided and leftMostNE return when no point is in
+    // range.  Points never change, so one of each is shared.
+    static final PSTPoint NONE_HIGHEST =
+	new PSTPoint(Double.POSITIVE_INFINITY,Double.NEGATIVE_INFINITY);
+    static final PSTPoint NONE_LEFTMOST =
+	new PSTPoint(Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY);
+
     private Point2D.Double p;
 
     public PSTPoint(double x, double y) {
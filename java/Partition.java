@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Partition {
 /******************************************************************************
@@ -9,6 +10,128 @@ public class Partition {
 					    int endIndex, PSTPoint s) {
 	
     }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: zeroesFirst                                                  *
+*                                                                             *
+* PURPOSE:       Moves the zeroes (points with x < s) between beginIndex      *
+*                and endIndex (inclusive, base 0) in front of the ones.       *
+*                The ones keep their relative order; the zeroes do not.       *
+*                ids[i] moves wherever array[i] moves; ids may be null.       *
+*                                                                             *
+* RETURN:        The number of zeroes.                                        *
+*                                                                             *
+* NOTES:         One pass from the right, O(n) time and O(1) space.  This     *
+*                is all the in-place PST build needs: the ones are sorted     *
+*                already, and the zeroes are few enough to sort afterwards.   *
+*                                                                             *
+******************************************************************************/
+    public static int zeroesFirst(PSTPoint[] array, long[] ids,
+				  int beginIndex, int endIndex, double s) {
+	// [firstOne,endIndex] holds the ones found so far, in order
+	int firstOne = endIndex+1;
+	for(int i = endIndex; i >= beginIndex; i--) {
+	    if(!(array[i].getX() < s)) {
+		firstOne--;
+		swap(array,i,firstOne);
+		if(ids != null) {
+		    long temp = ids[i];
+		    ids[i] = ids[firstOne];
+		    ids[firstOne] = temp;
+		}
+	    }
+	}
+	return firstOne - beginIndex;
+    }
+
+    // As above, on a ForkJoinPool.  Both halves are partitioned
+    // concurrently and then the ones of the left half are exchanged with
+    // the zeroes of the right half by three reversals, each of which is
+    // itself split up.  Ranges of fewer than threshold points are done
+    // sequentially.
+    public static int zeroesFirst(PSTPoint[] array, long[] ids,
+				  int beginIndex, int endIndex, double s,
+				  ForkJoinPool pool, int threshold) {
+	return pool.invoke(new ZeroesFirst(array,ids,beginIndex,endIndex,s,
+					   Math.max(threshold,2)));
+    }
+    private static class ZeroesFirst extends RecursiveTask<Integer> {
+	private static final long serialVersionUID = 1L;
+	private final PSTPoint[] array;
+	private final long[] ids;
+	private final int beginIndex, endIndex, threshold;
+	private final double s;
+	ZeroesFirst(PSTPoint[] array, long[] ids, int beginIndex, int endIndex,
+		    double s, int threshold) {
+	    this.array = array;
+	    this.ids = ids;
+	    this.beginIndex = beginIndex;
+	    this.endIndex = endIndex;
+	    this.s = s;
+	    this.threshold = threshold;
+	}
+	protected Integer compute() {
+	    if(1 + endIndex - beginIndex < threshold)
+		return zeroesFirst(array,ids,beginIndex,endIndex,s);
+	    int middle = (beginIndex + endIndex) >>> 1;
+	    ZeroesFirst left =
+		new ZeroesFirst(array,ids,beginIndex,middle,s,threshold);
+	    ZeroesFirst right =
+		new ZeroesFirst(array,ids,middle+1,endIndex,s,threshold);
+	    invokeAll(left,right);
+	    int zeroesLeft = left.join(), zeroesRight = right.join();
+	    // ones of the left half: [beginIndex+zeroesLeft,middle]
+	    // zeroes of the right half: [middle+1,middle+zeroesRight]
+	    int beginA = beginIndex + zeroesLeft, endB = middle + zeroesRight;
+	    if(beginA <= middle && middle < endB) {
+		invokeAll(new Reverse(array,ids,beginA,middle,threshold),
+			  new Reverse(array,ids,middle+1,endB,threshold));
+		new Reverse(array,ids,beginA,endB,threshold).invoke();
+	    }
+	    return zeroesLeft + zeroesRight;
+	}
+    }
+    // Reverses [begin,end] (inclusive), splitting the swaps up
+    private static class Reverse extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private final PSTPoint[] array;
+	private final long[] ids;
+	private final int begin, end, threshold;
+	// only swaps begin+k with end-k for k in [fromK,toK)
+	private final int fromK, toK;
+	Reverse(PSTPoint[] array, long[] ids, int begin, int end,
+		int threshold) {
+	    this(array,ids,begin,end,threshold,0,(1 + end - begin)/2);
+	}
+	private Reverse(PSTPoint[] array, long[] ids, int begin, int end,
+			int threshold, int fromK, int toK) {
+	    this.array = array;
+	    this.ids = ids;
+	    this.begin = begin;
+	    this.end = end;
+	    this.threshold = threshold;
+	    this.fromK = fromK;
+	    this.toK = toK;
+	}
+	protected void compute() {
+	    if(toK - fromK < threshold) {
+		for(int k = fromK; k < toK; k++) {
+		    swap(array,begin+k,end-k);
+		    if(ids != null) {
+			long temp = ids[begin+k];
+			ids[begin+k] = ids[end-k];
+			ids[end-k] = temp;
+		    }
+		}
+		return;
+	    }
+	    int middleK = (fromK + toK) >>> 1;
+	    invokeAll(new Reverse(array,ids,begin,end,threshold,fromK,middleK),
+		      new Reverse(array,ids,begin,end,threshold,middleK,toK));
+	}
+    }
+
     // time: O(n)
     // extra space:
     //    - n bits
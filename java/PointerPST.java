@@ -22,23 +22,60 @@
 
 import java.awt.geom.*;
 import java.util.*;
+import java.util.stream.*;
+import java.util.concurrent.*;
 
 public class PointerPST implements PrioritySearchTree {
     private PointerPSTNode root;
+    // number of points in the tree
+    private int size;
+    // default size of the smallest subtree built as a task of its own
+    static final int PARALLEL_CUTOFF = 1 << 13;
     
     public PointerPST(ArrayList<PSTPoint> points) {
+	this(points,null);
+    }
+    public PointerPST(ArrayList<PSTPoint> points, ForkJoinPool pool) {
+	this(points,pool,PARALLEL_CUTOFF);
+    }
+    // Builds on the given pool, or sequentially if pool is null.  The two
+    // subtrees of any subtree of at least cutoff points are built
+    // concurrently.  The list of points is not modified.
+    public PointerPST(ArrayList<PSTPoint> points, ForkJoinPool pool,
+		      int cutoff) {
 	if(points == null) return;
-	Collections.sort(points); // Sort by y-coordinate in decreasing order
-	this.root = buildTree(points);
+	PSTPoint[] array = points.toArray(new PSTPoint[points.size()]);
+	size = array.length;
+	if(pool == null) {
+	    Sort.heapSort(array,0,array.length-1);
+	    this.root = buildTree(array,0,array.length,Integer.MAX_VALUE);
+	} else {
+	    Sort.parallelSort(array,null,0,array.length-1,pool,cutoff);
+	    Build build = new Build(array,0,array.length,cutoff);
+	    pool.invoke(build);
+	    this.root = build.root;
+	}
     }
 /******************************************************************************
-* Given a list of valid points P ordered by y-coordinate in decreasing        *
-* order, determines a median which bisects the remaining points, then         *
-* builds:                                                                     *
+* Given the points P in [lo,hi) of the array, sorted by x, builds:            *
+*                                                                             *
+*   root: point with highest y-value                                          *
+*   left child:  the ⌈(|P|-1)/2⌉ remaining points of lowest x                 *
+*   right child: the other remaining points                                   *
+*                                                                             *
+* so the tree has depth ⌈log2(n+1)⌉ however the x values are spread.  The     *
+* x of the last left point is kept in the root as its split key:              *
 *                                                                             *
-*   root: point with lowest y-value                                           *
-*   left child:  {p ∈ (P - root) | p.x <= medianX}                            *
-*   right child: {p ∈ (P - root) | p.x >  medianX}                            *
+*   left child:  {p ∈ (P - root) | p.x <= split}                              *
+*   right child: {p ∈ (P - root) | p.x >  split}                              *
+*                                                                             *
+* so queries can decide which children to visit without looking into them.    *
+*                                                                             *
+* The points left of the root are shifted over by one, so [lo+1,hi) stays     *
+* sorted and the children are built from sub-ranges of the same array.        *
+* Each level does O(n) work, so the build is O(n log n) including the         *
+* initial sort.  The sub-ranges never overlap, so the children can be         *
+* built concurrently.                                                         *
 *                                                                             *
 * Note: points are also assumed to have distinct coordinates, i.e. no         *
 *       two points have the same x coordinate and no two points have          *
@@ -53,30 +90,49 @@ public class PointerPST implements PrioritySearchTree {
 ******************************************************************************/
 
     // Assumes all points are valid (e.g. not null)
-    private PointerPSTNode buildTree(ArrayList<PSTPoint> points) {
-	if(points == null || points.size() < 1) return null;
+    private static PointerPSTNode buildTree(PSTPoint[] points, int lo, int hi,
+					    int cutoff) {
+	if(lo >= hi) return null;
 	// Find point with highest Y value
-	PSTPoint rootPoint = points.remove(0);
-	// Find median X value
-	double sum = 0.0d;
-	for(PSTPoint p : points)
-	    sum += p.getX();
-	double medianX = sum/points.size();
-	// Make upper and lower point array
-	ArrayList<PSTPoint> upperPoints = new ArrayList<PSTPoint>();
-	ArrayList<PSTPoint> lowerPoints = new ArrayList<PSTPoint>();
-	for(PSTPoint p : points) {
-	    if(p.getX() <= medianX) lowerPoints.add(p);
-	    else upperPoints.add(p);
-	}
+	int indexOfMaxY = lo;
+	for(int i = lo+1; i < hi; i++)
+	    if(points[i].yGreaterThan(points[indexOfMaxY]))
+		indexOfMaxY = i;
+	PointerPSTNode root = new PointerPSTNode(points[indexOfMaxY]);
+	for(int i = indexOfMaxY; i > lo; i--)
+	    points[i] = points[i-1];
+	if(hi - lo == 1) return root;
+	// Split the rest at the median
+	int upper = lo + 1 + (hi - lo)/2;
+	root.setSplit(points[upper-1].getX());
 	// Make tree
-	PointerPSTNode root = new PointerPSTNode(rootPoint);
-	if(lowerPoints.size() > 0)
-	    root.setLeftChild(buildTree(lowerPoints));
-	if(upperPoints.size() > 0)
-	    root.setRightChild(buildTree(upperPoints));
+	if(hi - lo >= cutoff) {
+	    Build left = new Build(points,lo+1,upper,cutoff);
+	    Build right = new Build(points,upper,hi,cutoff);
+	    ForkJoinTask.invokeAll(left,right);
+	    root.setLeftChild(left.root);
+	    root.setRightChild(right.root);
+	} else {
+	    root.setLeftChild(buildTree(points,lo+1,upper,cutoff));
+	    root.setRightChild(buildTree(points,upper,hi,cutoff));
+	}
 	return root;
     }
+    private static class Build extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private final PSTPoint[] points;
+	private final int lo, hi, cutoff;
+	PointerPSTNode root;
+	Build(PSTPoint[] points, int lo, int hi, int cutoff) {
+	    this.points = points;
+	    this.lo = lo;
+	    this.hi = hi;
+	    this.cutoff = cutoff;
+	}
+	protected void compute() {
+	    root = buildTree(points,lo,hi,cutoff);
+	}
+    }
 /******************************************************************************
 *                                                                             *
 * Find all points within the region bounded by (minX,minY) and (maxX,minY)    *
@@ -100,8 +156,7 @@ public class PointerPST implements PrioritySearchTree {
     // In the worst case, all nodes are visited.
     private List<PSTPoint> enumerate3Sided(double minX,double maxX, double minY,
 					   ArrayList<PSTPoint> list,
-					   PointerPSTNode node)
-	throws EmptyTreeException {
+					   PointerPSTNode node) {
 	if(node == null) return list;
 	if(node.getY() >= minY) {
 	    double nodeX = node.getX();
@@ -110,7 +165,7 @@ public class PointerPST implements PrioritySearchTree {
 	    }
 	    PointerPSTNode leftChild = node.getLeftChild();
 	    if(leftChild != null) {
-		double nodeR = maxX(leftChild);
+		double nodeR = node.getSplit();
 		// nodeR >= points in left tree >= minX
 		if(nodeR >= minX)
 		    enumerate3Sided(minX,maxX,minY,list,
@@ -124,6 +179,229 @@ public class PointerPST implements PrioritySearchTree {
 	return list;
     }
 /******************************************************************************
+* Parallel enumeration                                                        *
+*                                                                             *
+* As enumerate3Sided, but for queries with very many points.  Each subtree    *
+* the search enters with more than about cutoff points is handed to tasks     *
+* of its own.  Each task collects the points of its part of the search into   *
+* its own list, and the lists are joined in preorder, so the result is the    *
+* same however the tasks are scheduled.                                       *
+******************************************************************************/
+    public List<PSTPoint> enumerate3Sided(double minX, double maxX, double minY,
+					  ForkJoinPool pool) {
+	return enumerate3Sided(minX,maxX,minY,pool,PARALLEL_CUTOFF);
+    }
+    public List<PSTPoint> enumerate3Sided(double minX, double maxX, double minY,
+					  ForkJoinPool pool, int cutoff) {
+	if(root == null || root.getY() < minY)
+	    return new ArrayList<PSTPoint>();
+	List<ArrayList<PSTPoint>> lists =
+	    pool.invoke(new Enumerate(root,size,minX,maxX,minY,
+				      Math.max(cutoff,1)));
+	int total = 0;
+	for(ArrayList<PSTPoint> list : lists)
+	    total += list.size();
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>(total);
+	for(ArrayList<PSTPoint> list : lists)
+	    points.addAll(list);
+	return points;
+    }
+    private class Enumerate
+	extends RecursiveTask<List<ArrayList<PSTPoint>>> {
+	private static final long serialVersionUID = 1L;
+	private final PointerPSTNode node;
+	// number of points in the subtree of node
+	private final int size, cutoff;
+	private final double minX, maxX, minY;
+	Enumerate(PointerPSTNode node, int size, double minX, double maxX,
+		  double minY, int cutoff) {
+	    this.node = node;
+	    this.size = size;
+	    this.minX = minX;
+	    this.maxX = maxX;
+	    this.minY = minY;
+	    this.cutoff = cutoff;
+	}
+	protected List<ArrayList<PSTPoint>> compute() {
+	    ArrayList<ArrayList<PSTPoint>> lists =
+		new ArrayList<ArrayList<PSTPoint>>();
+	    ArrayList<PSTPoint> points = new ArrayList<PSTPoint>();
+	    lists.add(points);
+	    if(size <= cutoff) {
+		enumerate3Sided(minX,maxX,minY,points,node);
+		return lists;
+	    }
+	    double nodeX = node.getX();
+	    if(nodeX >= minX && nodeX <= maxX)
+		points.add(node.getPoint());
+	    ArrayList<Enumerate> children = new ArrayList<Enumerate>(2);
+	    PointerPSTNode leftChild = node.getLeftChild();
+	    if(leftChild != null) {
+		double nodeR = node.getSplit();
+		// buildTree gives the left child the larger half
+		int sizeL = size/2;
+		if(nodeR >= minX && leftChild.getY() >= minY)
+		    children.add(new Enumerate(leftChild,sizeL,
+					       minX,maxX,minY,cutoff));
+		PointerPSTNode rightChild = node.getRightChild();
+		if(nodeR < maxX && rightChild != null &&
+		   rightChild.getY() >= minY)
+		    children.add(new Enumerate(rightChild,size-1-sizeL,
+					       minX,maxX,minY,cutoff));
+	    }
+	    invokeAll(children);
+	    for(Enumerate child : children)
+		lists.addAll(child.getRawResult());
+	    return lists;
+	}
+    }
+/******************************************************************************
+* Lazy enumeration                                                            *
+*                                                                             *
+* iterate3Sided returns the points of enumerate3Sided one at a time,          *
+* walking the tree in preorder with a stack of the subtrees still to be       *
+* walked, so a caller which stops early never visits the rest of the tree.    *
+* stream3Sided wraps the same walk as a sequential Stream.                    *
+******************************************************************************/
+    public Iterator<PSTPoint> iterate3Sided(double minX, double maxX,
+					   double minY) {
+	return new Iterator3Sided(minX,maxX,minY);
+    }
+    public Stream<PSTPoint> stream3Sided(double minX, double maxX, double minY) {
+	return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+	    iterate3Sided(minX,maxX,minY),
+	    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+				    false);
+    }
+    private class Iterator3Sided implements Iterator<PSTPoint> {
+	private final double minX, maxX, minY;
+	// roots of the subtrees still to be walked, all with y >= minY
+	private final ArrayDeque<PointerPSTNode> stack =
+	    new ArrayDeque<PointerPSTNode>();
+	private PointerPSTNode next;
+	Iterator3Sided(double minX, double maxX, double minY) {
+	    this.minX = minX;
+	    this.maxX = maxX;
+	    this.minY = minY;
+	    push(root);
+	}
+	private void push(PointerPSTNode node) {
+	    if(node != null && node.getY() >= minY)
+		stack.push(node);
+	}
+	public boolean hasNext() {
+	    while(next == null && !stack.isEmpty()) {
+		PointerPSTNode node = stack.pop();
+		if(node.getLeftChild() != null) {
+		    double nodeR = node.getSplit();
+		    // pushed right first, so the left is walked first
+		    if(nodeR < maxX)
+			push(node.getRightChild());
+		    if(nodeR >= minX)
+			push(node.getLeftChild());
+		}
+		double nodeX = node.getX();
+		if(nodeX >= minX && nodeX <= maxX)
+		    next = node;
+	    }
+	    return next != null;
+	}
+	public PSTPoint next() {
+	    if(!hasNext()) throw new NoSuchElementException();
+	    PSTPoint p = next.getPoint();
+	    next = null;
+	    return p;
+	}
+    }
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: topK3Sided                                                   *
+*                                                                             *
+* PURPOSE:       Returns the k highest points within a query region           *
+*                bounded on 3 sides, highest first.                           *
+*                                                                             *
+*                Every node is higher than the nodes below it, so taking      *
+*                nodes from a heap keyed on y, and adding the children of     *
+*                each node taken, yields them in decreasing y.  Only nodes    *
+*                whose subtree may hold points of the query are added.        *
+*                Those outside [xmin,xmax] lie along the two boundaries of    *
+*                the query, so O(log n + k) nodes are taken, in               *
+*                O(log n + k log k) time.  iterate3SidedByY does the same     *
+*                lazily, for when k is not known in advance.                  *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   double/minX                                                  *
+*   Description: Minimum x value.                                             *
+*                                                                             *
+*   Type/Name:   double/maxX                                                  *
+*   Description: Maximum x value.                                             *
+*                                                                             *
+*   Type/Name:   double/minY                                                  *
+*   Description: Minimum y value.                                             *
+*                                                                             *
+*   Type/Name:   int/k                                                        *
+*   Description: Most points to return.                                       *
+*                                                                             *
+* RETURN:        List<PSTPoint> of at most k points, in decreasing y.         *
+*                                                                             *
+******************************************************************************/
+    public List<PSTPoint> topK3Sided(double minX, double maxX, double minY,
+				     int k) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>(Math.min(k,16));
+	Iterator<PSTPoint> descending = iterate3SidedByY(minX,maxX,minY);
+	while(points.size() < k && descending.hasNext())
+	    points.add(descending.next());
+	return points;
+    }
+    public Iterator<PSTPoint> iterate3SidedByY(double minX, double maxX,
+					      double minY) {
+	return new Descending3Sided(minX,maxX,minY);
+    }
+    private class Descending3Sided implements Iterator<PSTPoint> {
+	private final double minX, maxX, minY;
+	// roots of the subtrees still to be walked, highest first
+	private final PriorityQueue<PointerPSTNode> heap =
+	    new PriorityQueue<PointerPSTNode>(16,
+		new Comparator<PointerPSTNode>() {
+		    public int compare(PointerPSTNode a, PointerPSTNode b) {
+			return Double.compare(b.getY(),a.getY());
+		    }
+		});
+	private PointerPSTNode next;
+	Descending3Sided(double minX, double maxX, double minY) {
+	    this.minX = minX;
+	    this.maxX = maxX;
+	    this.minY = minY;
+	    add(root);
+	}
+	private void add(PointerPSTNode node) {
+	    if(node != null && node.getY() >= minY)
+		heap.add(node);
+	}
+	public boolean hasNext() {
+	    while(next == null && !heap.isEmpty()) {
+		PointerPSTNode node = heap.poll();
+		if(node.getLeftChild() != null) {
+		    double nodeR = node.getSplit();
+		    if(nodeR >= minX)
+			add(node.getLeftChild());
+		    if(nodeR < maxX)
+			add(node.getRightChild());
+		}
+		double nodeX = node.getX();
+		if(nodeX >= minX && nodeX <= maxX)
+		    next = node;
+	    }
+	    return next != null;
+	}
+	public PSTPoint next() {
+	    if(!hasNext()) throw new NoSuchElementException();
+	    PSTPoint p = next.getPoint();
+	    next = null;
+	    return p;
+	}
+    }
+/******************************************************************************
 * Other query functions                                                       *
 ******************************************************************************/
     public double maxYinRange(double minX, double maxX, double minY)
@@ -139,12 +417,12 @@ public class PointerPST implements PrioritySearchTree {
 	if(nodeX >= minX && nodeX <= maxX) return node.getY();
 	PointerPSTNode leftChild = node.getLeftChild();
 	if(leftChild != null) {
-	    double nodeR = maxX(leftChild);
+	    double nodeR = node.getSplit();
 	    // nodeR >= points in left tree >= minX
 	    if(nodeR >= minX && nodeR < maxX) {
 		double maxLeft = maxYinRange(minX,maxX,minY,leftChild);
 		double maxRight = maxYinRange(minX,maxX,minY,node.getRightChild());
-		return (maxLeft < maxRight ? maxLeft : maxRight);
+		return (maxLeft > maxRight ? maxLeft : maxRight);
 	    } else if(nodeR >= minX) {
 		return maxYinRange(minX,maxX,minY,node.getLeftChild());
 	    } else if(nodeR < maxX) {
@@ -169,12 +447,14 @@ public class PointerPST implements PrioritySearchTree {
 	    min = nodeX;
 	PointerPSTNode leftChild = node.getLeftChild();
 	if(leftChild != null) {
-	    double nodeR = maxX(leftChild);
+	    double nodeR = node.getSplit();
+	    double minLeft = Double.POSITIVE_INFINITY;
 	    if(nodeR >= minX) {
-		double minLeft = minXinRange(minX,maxX,minY,leftChild);
+		minLeft = minXinRange(minX,maxX,minY,leftChild);
 		if(minLeft < min) min = minLeft;
 	    }
-	    if(nodeR < maxX) {
+	    // anything found on the left beats everything on the right
+	    if(nodeR < maxX && minLeft == Double.POSITIVE_INFINITY) {
 		double minRight = minXinRange(minX,maxX,minY,node.getRightChild());
 		if(minRight < min) min = minRight;
 	    }
@@ -197,15 +477,17 @@ public class PointerPST implements PrioritySearchTree {
 	    max = nodeX;
 	PointerPSTNode leftChild = node.getLeftChild();
 	if(leftChild != null) {
-	    double nodeR = maxX(leftChild);
-	    if(nodeR >= minX) {
-		double maxLeft = maxXinRange(minX,maxX,minY,leftChild);
-		if(maxLeft > max) max = maxLeft;
-	    }
+	    double nodeR = node.getSplit();
+	    double maxRight = Double.NEGATIVE_INFINITY;
 	    if(nodeR < maxX) {
-		double maxRight = maxXinRange(minX,maxX,minY,node.getRightChild());
+		maxRight = maxXinRange(minX,maxX,minY,node.getRightChild());
 		if(maxRight > max) max = maxRight;
 	    }
+	    // anything found on the right beats everything on the left
+	    if(nodeR >= minX && maxRight == Double.NEGATIVE_INFINITY) {
+		double maxLeft = maxXinRange(minX,maxX,minY,leftChild);
+		if(maxLeft > max) max = maxLeft;
+	    }
 	}
 	return max;
     }
@@ -225,14 +507,14 @@ public class PointerPST implements PrioritySearchTree {
 	    min = node.getY();
 	PointerPSTNode leftChild = node.getLeftChild();
 	if(leftChild != null) {
-	    double nodeR = maxX(leftChild);
+	    double nodeR = node.getSplit();
 	    if(nodeR >= minX) {
 		double minLeft = minYinRange(minX,maxX,minY,leftChild);
-		if(minLeft > min) min = minLeft;
+		if(minLeft < min) min = minLeft;
 	    }
 	    if(nodeR < maxX) {
 		double minRight = minYinRange(minX,maxX,minY,node.getRightChild());
-		if(minRight > min) min = minRight;
+		if(minRight < min) min = minRight;
 	    }
 	}
 	return min;
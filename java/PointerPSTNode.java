@@ -17,6 +17,8 @@
 public class PointerPSTNode {
     private PSTPoint p;
     private PointerPSTNode leftChild, rightChild;
+    // points in the left subtree have x <= split < x of the right subtree
+    private double split;
 
     public PointerPSTNode(double x, double y) {
 	this(new PSTPoint(x,y));
@@ -31,10 +33,17 @@ public class PointerPSTNode {
     public PSTPoint getPoint() { return p; }
     public PointerPSTNode getLeftChild() { return leftChild; }
     public PointerPSTNode getRightChild() { return rightChild; }
+    public double getSplit() { return split; }
+    public void setPoint(PSTPoint p) {
+	this.p = p;
+    }
     public void setLeftChild(PointerPSTNode p) {
 	this.leftChild = p;
     }
     public void setRightChild(PointerPSTNode p) {
 	this.rightChild = p;
     }
+    public void setSplit(double split) {
+	this.split = split;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    PrimitiveInPlacePST.java                                           *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   An in-place PST whose coordinates live in two parallel double      *
+*          arrays rather than in PSTPoint objects.  Visiting a node costs     *
+*          one load from each array instead of two pointer chases, and a      *
+*          point costs 16 bytes instead of three object headers.  A           *
+*          PSTPoint is only allocated when a result is handed out.            *
+*                                                                             *
+******************************************************************************/
+
+public class PrimitiveInPlacePST extends AbstractInPlacePST {
+    // Note: base 0, the node with base 1 index i is at xs[i-1],ys[i-1]
+    double[] xs, ys;
+
+    public PrimitiveInPlacePST(PSTPoint[] points) {
+	xs = new double[points.length];
+	ys = new double[points.length];
+	for(int i = 0; i < points.length; i++) {
+	    xs[i] = points[i].getX();
+	    ys[i] = points[i].getY();
+	}
+	build();
+    }
+    // The arrays are copied, not adopted
+    public PrimitiveInPlacePST(double[] xs, double[] ys) {
+	if(xs.length != ys.length)
+	    throw new IllegalArgumentException("xs and ys differ in length");
+	this.xs = xs.clone();
+	this.ys = ys.clone();
+	build();
+    }
+
+/******************************************************************************
+* Storage                                                                     *
+******************************************************************************/
+    public int size() {
+	return xs.length;
+    }
+    protected double getX(int index) { // base 1
+	return xs[index-1];
+    }
+    protected double getY(int index) { // base 1
+	return ys[index-1];
+    }
+    protected void swap(int i, int j) { // base 1
+	double temp = xs[i-1];
+	xs[i-1] = xs[j-1];
+	xs[j-1] = temp;
+	temp = ys[i-1];
+	ys[i-1] = ys[j-1];
+	ys[j-1] = temp;
+    }
+    protected void sortByX(int beginIndex, int endIndex) { // base 1
+	Sort.inPlaceRadixSort(xs,ys,beginIndex-1,endIndex-1);
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) {
+	int n = 15;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	System.out.println("Creating points...");
+	PSTPoint[] testPoints = new PSTPoint[n];
+	for(int i = 0; i < n ; i++)
+	    testPoints[i] = new PSTPoint(i,n-i);
+	System.out.println("Building PST with " + n + " nodes...");
+	StopWatch sw = new StopWatch();
+	PrimitiveInPlacePST pst = new PrimitiveInPlacePST(testPoints);
+	long time = sw.stop();
+	System.out.println("Took: " + time);
+	if(n < 20) {
+	    System.out.print("PST: "); pst.printArray();
+	}
+	System.out.println("leftMostNE(x=-10,y=-10):                "
+			   + pst.leftMostNE(-10,-10));
+	System.out.println("highestNE(x=1,y=-10):                   "
+			   + pst.highestNE(1,-10));
+	System.out.println("highest3Sided(xmin=4,xmax=5,ymin=0):    "
+			   + pst.highest3Sided(4,5,0));
+	System.out.print(  "enumerate3Sided(xmin=1,xmax=7,ymin=-8): ");
+	InPlacePST.printArray(pst.enumerate3Sided(1,7,-8).toArray(new PSTPoint[0]));
+    }
+}
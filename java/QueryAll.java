@@ -0,0 +1,204 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    QueryAll.java                                                      *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   Answers a batch of queries against one tree on a ForkJoinPool.     *
+*          The trees are not modified by queries, so any number of threads    *
+*          may query one at once.                                             *
+*                                                                             *
+*          The batch is split in halves until no more than grain queries      *
+*          remain, and each such range is answered by one task into its own   *
+*          buffer.  Buffers are joined left before right, so result j         *
+*          always answers query j, however the tasks were scheduled.          *
+*                                                                             *
+*          Each method submits the batch and returns its task at once.        *
+*          join() waits for the results; cancel(true) stops the batch, and    *
+*          every task still running stops before its next query.              *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class QueryAll {
+    // default number of queries answered by one task
+    static final int GRAIN = 64;
+
+    // Query j of a batch.  Exceptions thrown abort the batch.
+    public interface Query<R> {
+	public R answer(int j) throws Exception;
+    }
+
+/******************************************************************************
+* Any query                                                                   *
+******************************************************************************/
+    public static <R> ForkJoinTask<List<R>> submit(ForkJoinPool pool,
+						   int count, Query<R> query) {
+	return submit(pool,count,query,GRAIN);
+    }
+    public static <R> ForkJoinTask<List<R>> submit(ForkJoinPool pool,
+						   int count, Query<R> query,
+						   int grain) {
+	Batch<R> batch = new Batch<R>(null,query,0,count,Math.max(grain,1));
+	return pool.submit(batch);
+    }
+    private static class Batch<R> extends RecursiveTask<List<R>> {
+	private static final long serialVersionUID = 1L;
+	// the task submitted, which is the one cancelled
+	private final ForkJoinTask<?> root;
+	private final Query<R> query;
+	private final int begin, end, grain;
+	Batch(ForkJoinTask<?> root, Query<R> query, int begin, int end,
+	      int grain) {
+	    this.root = root == null ? this : root;
+	    this.query = query;
+	    this.begin = begin;
+	    this.end = end;
+	    this.grain = grain;
+	}
+	protected List<R> compute() {
+	    if(end - begin <= grain) {
+		ArrayList<R> results = new ArrayList<R>(end - begin);
+		for(int j = begin; j < end && !root.isCancelled(); j++) {
+		    try {
+			results.add(query.answer(j));
+		    } catch(RuntimeException e) {
+			throw e;
+		    } catch(Exception e) {
+			throw new CompletionException(e);
+		    }
+		}
+		return results;
+	    }
+	    int middle = (begin + end) >>> 1;
+	    Batch<R> left = new Batch<R>(root,query,begin,middle,grain);
+	    Batch<R> right = new Batch<R>(root,query,middle,end,grain);
+	    invokeAll(left,right);
+	    List<R> results = left.getRawResult();
+	    results.addAll(right.getRawResult());
+	    return results;
+	}
+    }
+
+/******************************************************************************
+* 3-sided queries on any PrioritySearchTree                                   *
+*                                                                             *
+* Query j is (minX[j],maxX[j],minY[j]).  An empty tree gives empty lists.     *
+******************************************************************************/
+    public static ForkJoinTask<List<List<PSTPoint>>>
+	enumerate3Sided(ForkJoinPool pool, final PrioritySearchTree tree,
+			final double[] minX, final double[] maxX,
+			final double[] minY) {
+	checkBounds(minX,maxX,minY);
+	return submit(pool,minX.length,new Query<List<PSTPoint>>() {
+		public List<PSTPoint> answer(int j) {
+		    try {
+			return tree.enumerate3Sided(minX[j],maxX[j],minY[j]);
+		    } catch(EmptyTreeException e) {
+			return new ArrayList<PSTPoint>();
+		    }
+		}
+	    });
+    }
+    // Element j is the highest y of query j, or NaN if it has no points.
+    // Fails with UnsupportedOperationException if the tree does not
+    // implement maxYinRange.
+    public static ForkJoinTask<double[]>
+	maxYinRange(ForkJoinPool pool, PrioritySearchTree tree,
+		    double[] minX, double[] maxX, double[] minY) {
+	checkBounds(minX,maxX,minY);
+	double[] results = new double[minX.length];
+	MaxY batch = new MaxY(null,tree,minX,maxX,minY,results,
+			      0,minX.length,GRAIN);
+	return pool.submit(batch);
+    }
+    // As Batch, but each task writes its own range of one array, so no
+    // value is boxed and nothing needs joining.
+    private static class MaxY extends RecursiveTask<double[]> {
+	private static final long serialVersionUID = 1L;
+	private final ForkJoinTask<?> root;
+	private final PrioritySearchTree tree;
+	private final double[] minX, maxX, minY, results;
+	private final int begin, end, grain;
+	MaxY(ForkJoinTask<?> root, PrioritySearchTree tree,
+	     double[] minX, double[] maxX, double[] minY, double[] results,
+	     int begin, int end, int grain) {
+	    this.root = root == null ? this : root;
+	    this.tree = tree;
+	    this.minX = minX;
+	    this.maxX = maxX;
+	    this.minY = minY;
+	    this.results = results;
+	    this.begin = begin;
+	    this.end = end;
+	    this.grain = grain;
+	}
+	protected double[] compute() {
+	    if(end - begin <= grain) {
+		for(int j = begin; j < end && !root.isCancelled(); j++) {
+		    try {
+			results[j] = tree.maxYinRange(minX[j],maxX[j],minY[j]);
+		    } catch(NoPointsInRangeException e) {
+			results[j] = Double.NaN;
+		    } catch(NotImplementedException e) {
+			throw new UnsupportedOperationException(e.getMessage());
+		    }
+		}
+		return results;
+	    }
+	    int middle = (begin + end) >>> 1;
+	    invokeAll(new MaxY(root,tree,minX,maxX,minY,results,
+			       begin,middle,grain),
+		      new MaxY(root,tree,minX,maxX,minY,results,
+			       middle,end,grain));
+	    return results;
+	}
+    }
+    private static void checkBounds(double[] minX, double[] maxX,
+				    double[] minY) {
+	if(maxX.length != minX.length || minY.length != minX.length)
+	    throw new IllegalArgumentException("bounds differ in length");
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) throws Exception {
+	int n = 1000000, q = 100000;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	if(args.length > 1) q = Integer.parseInt(args[1]);
+	Random random = new Random(0);
+	PSTPoint[] points = new PSTPoint[n];
+	for(int i = 0; i < n; i++)
+	    points[i] = new PSTPoint(random.nextDouble(),random.nextDouble());
+	double[] minX = new double[q], maxX = new double[q], minY = new double[q];
+	for(int j = 0; j < q; j++) {
+	    minX[j] = random.nextDouble();
+	    maxX[j] = minX[j] + 0.001;
+	    minY[j] = random.nextDouble();
+	}
+	ArrayList<PSTPoint> list = new ArrayList<PSTPoint>(Arrays.asList(points));
+	PrioritySearchTree[] trees = { new InPlacePST(points),
+				       new ArrayPST(list,null),
+				       new PointerPST(list) };
+	ForkJoinPool pool = ForkJoinPool.commonPool();
+	System.out.println(q + " queries on " + n + " points, "
+			   + pool.getParallelism() + " threads");
+	for(PrioritySearchTree tree : trees) {
+	    String name = tree.getClass().getName();
+	    StopWatch sw = new StopWatch();
+	    for(int j = 0; j < q; j++)
+		tree.enumerate3Sided(minX[j],maxX[j],minY[j]);
+	    System.out.println(name + " one at a time took: " + sw.stop());
+	    sw = new StopWatch();
+	    enumerate3Sided(pool,tree,minX,maxX,minY).join();
+	    System.out.println(name + " queryAll took:      " + sw.stop());
+	}
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Sort {
 /******************************************************************************
@@ -40,25 +41,32 @@ public class Sort {
     // Sorts the elements of array between beginIndex and endIndex
     // (ignoring all other elements)
     public static void heapSort(PSTPoint[] array, int beginIndex, int endIndex) {
+	heapSort(array,null,beginIndex,endIndex);
+    }
+    // As above, but ids[i] moves wherever array[i] moves.  ids may be null.
+    public static void heapSort(PSTPoint[] array, long[] ids,
+				int beginIndex, int endIndex) {
+	if(presorted(array,ids,beginIndex,endIndex)) return;
 	// First arrange the array into a heap (root element is always higher
 	// than both child elements
-	buildHeap(array,beginIndex,endIndex);
+	buildHeap(array,ids,beginIndex,endIndex);
 	while(endIndex > beginIndex) {
 	    // Since the highest is first, move it to the end
-	    swap(array,beginIndex,endIndex);
+	    swap(array,ids,beginIndex,endIndex);
 	    // Now that the highest element is last, it is sorted so don't
 	    // touch it again
 	    endIndex--;
 	    // Since the smallest element is now first, rebuild the heap
-	    downHeap(array,0,beginIndex,endIndex);
+	    downHeap(array,ids,0,beginIndex,endIndex);
 	}
     }
     // builds a heap from bottom up, starting at right-most lowest level
     // and traversing up the heap in reverse order (right to left, bottom to top)
-    private static void buildHeap(PSTPoint[] array, int beginIndex, int endIndex) {
+    private static void buildHeap(PSTPoint[] array, long[] ids,
+				  int beginIndex, int endIndex) {
 	int n = 1+endIndex - beginIndex;
 	for(int v = n/2-1; v >= 0; v--)
-	    downHeap(array,v,beginIndex,endIndex);
+	    downHeap(array,ids,v,beginIndex,endIndex);
     }
 /******************************************************************************
 *                                                                             *
@@ -70,6 +78,9 @@ public class Sort {
 *   Type/Name:   PSTPoint[]/array                                             *
 *   Description: The array of points                                          *
 *                                                                             *
+*   Type/Name:   long[]/ids                                                   *
+*   Description: Ids permuted along with array, or null.                      *
+*                                                                             *
 *   Type/Name:   int/v                                                        *
 *   Description: The offset from beginIndex from which to begin               *
 *                building the heap.                                           *
@@ -91,7 +102,7 @@ public class Sort {
 *                                                                             *
 ******************************************************************************/
     
-    private static void downHeap(PSTPoint[] array, int v,
+    private static void downHeap(PSTPoint[] array, long[] ids, int v,
 				 int beginIndex, int endIndex) {
 	int w = leftChildOf(v);
 	// invariant: element at index v has a left child
@@ -106,7 +117,7 @@ public class Sort {
 	    if(!(array[beginIndex + w].xGreaterThan(array[beginIndex + v])))
 		return;
 	    // otherwise, swap child and parent
-	    swap(array,beginIndex + w,beginIndex + v);
+	    swap(array,ids,beginIndex + w,beginIndex + v);
 	    // continue with child
 	    v = w;
 	    w = leftChildOf(v);
@@ -119,6 +130,448 @@ public class Sort {
 	return 2*index+2;
     }
 /******************************************************************************
+* Heap Sort on parallel coordinate arrays                                     *
+*                                                                             *
+* Same algorithm as above, keyed on xs.  Whatever happens to xs[i] also       *
+* happens to ys[i], so the two arrays stay paired.  One copy per              *
+* coordinate type: double, int, long and float.                               *
+******************************************************************************/
+    public static void heapSort(double[] xs, double[] ys) {
+	heapSort(xs,ys,0,xs.length-1);
+    }
+    public static void heapSort(double[] xs, double[] ys,
+				int beginIndex, int endIndex) {
+	if(presorted(xs,ys,beginIndex,endIndex)) return;
+	buildHeap(xs,ys,beginIndex,endIndex);
+	while(endIndex > beginIndex) {
+	    swap(xs,ys,beginIndex,endIndex);
+	    endIndex--;
+	    downHeap(xs,ys,0,beginIndex,endIndex);
+	}
+    }
+    private static void buildHeap(double[] xs, double[] ys,
+				  int beginIndex, int endIndex) {
+	int n = 1+endIndex - beginIndex;
+	for(int v = n/2-1; v >= 0; v--)
+	    downHeap(xs,ys,v,beginIndex,endIndex);
+    }
+    private static void downHeap(double[] xs, double[] ys, int v,
+				 int beginIndex, int endIndex) {
+	int w = leftChildOf(v);
+	while(beginIndex + w <= endIndex) {
+	    if(beginIndex + w+1 <= endIndex)
+		if(xs[beginIndex + w+1] > xs[beginIndex + w])
+		    w++;
+	    if(!(xs[beginIndex + w] > xs[beginIndex + v]))
+		return;
+	    swap(xs,ys,beginIndex + w,beginIndex + v);
+	    v = w;
+	    w = leftChildOf(v);
+	}
+    }
+    public static void heapSort(int[] xs, int[] ys) {
+	heapSort(xs,ys,0,xs.length-1);
+    }
+    public static void heapSort(int[] xs, int[] ys,
+				int beginIndex, int endIndex) {
+	if(presorted(xs,ys,beginIndex,endIndex)) return;
+	buildHeap(xs,ys,beginIndex,endIndex);
+	while(endIndex > beginIndex) {
+	    swap(xs,ys,beginIndex,endIndex);
+	    endIndex--;
+	    downHeap(xs,ys,0,beginIndex,endIndex);
+	}
+    }
+    private static void buildHeap(int[] xs, int[] ys,
+				  int beginIndex, int endIndex) {
+	int n = 1+endIndex - beginIndex;
+	for(int v = n/2-1; v >= 0; v--)
+	    downHeap(xs,ys,v,beginIndex,endIndex);
+    }
+    private static void downHeap(int[] xs, int[] ys, int v,
+				 int beginIndex, int endIndex) {
+	int w = leftChildOf(v);
+	while(beginIndex + w <= endIndex) {
+	    if(beginIndex + w+1 <= endIndex)
+		if(xs[beginIndex + w+1] > xs[beginIndex + w])
+		    w++;
+	    if(!(xs[beginIndex + w] > xs[beginIndex + v]))
+		return;
+	    swap(xs,ys,beginIndex + w,beginIndex + v);
+	    v = w;
+	    w = leftChildOf(v);
+	}
+    }
+    public static void heapSort(long[] xs, long[] ys) {
+	heapSort(xs,ys,0,xs.length-1);
+    }
+    public static void heapSort(long[] xs, long[] ys,
+				int beginIndex, int endIndex) {
+	if(presorted(xs,ys,beginIndex,endIndex)) return;
+	buildHeap(xs,ys,beginIndex,endIndex);
+	while(endIndex > beginIndex) {
+	    swap(xs,ys,beginIndex,endIndex);
+	    endIndex--;
+	    downHeap(xs,ys,0,beginIndex,endIndex);
+	}
+    }
+    private static void buildHeap(long[] xs, long[] ys,
+				  int beginIndex, int endIndex) {
+	int n = 1+endIndex - beginIndex;
+	for(int v = n/2-1; v >= 0; v--)
+	    downHeap(xs,ys,v,beginIndex,endIndex);
+    }
+    private static void downHeap(long[] xs, long[] ys, int v,
+				 int beginIndex, int endIndex) {
+	int w = leftChildOf(v);
+	while(beginIndex + w <= endIndex) {
+	    if(beginIndex + w+1 <= endIndex)
+		if(xs[beginIndex + w+1] > xs[beginIndex + w])
+		    w++;
+	    if(!(xs[beginIndex + w] > xs[beginIndex + v]))
+		return;
+	    swap(xs,ys,beginIndex + w,beginIndex + v);
+	    v = w;
+	    w = leftChildOf(v);
+	}
+    }
+    public static void heapSort(float[] xs, float[] ys) {
+	heapSort(xs,ys,0,xs.length-1);
+    }
+    public static void heapSort(float[] xs, float[] ys,
+				int beginIndex, int endIndex) {
+	if(presorted(xs,ys,beginIndex,endIndex)) return;
+	buildHeap(xs,ys,beginIndex,endIndex);
+	while(endIndex > beginIndex) {
+	    swap(xs,ys,beginIndex,endIndex);
+	    endIndex--;
+	    downHeap(xs,ys,0,beginIndex,endIndex);
+	}
+    }
+    private static void buildHeap(float[] xs, float[] ys,
+				  int beginIndex, int endIndex) {
+	int n = 1+endIndex - beginIndex;
+	for(int v = n/2-1; v >= 0; v--)
+	    downHeap(xs,ys,v,beginIndex,endIndex);
+    }
+    private static void downHeap(float[] xs, float[] ys, int v,
+				 int beginIndex, int endIndex) {
+	int w = leftChildOf(v);
+	while(beginIndex + w <= endIndex) {
+	    if(beginIndex + w+1 <= endIndex)
+		if(xs[beginIndex + w+1] > xs[beginIndex + w])
+		    w++;
+	    if(!(xs[beginIndex + w] > xs[beginIndex + v]))
+		return;
+	    swap(xs,ys,beginIndex + w,beginIndex + v);
+	    v = w;
+	    w = leftChildOf(v);
+	}
+    }
+/******************************************************************************
+* Radix Sort                                                                  *
+*                                                                             *
+* Sorts by x on the IEEE-754 bits of the coordinates.  sortableBits maps a    *
+* double to a long whose unsigned order is the order of the doubles: flip     *
+* the sign bit of positive values, and every bit of negative ones.  The       *
+* long is then sorted one byte at a time.                                     *
+*                                                                             *
+* radixSort is least significant byte first.  It makes one pass to count      *
+* all eight bytes, then one stable pass per byte, skipping bytes that are     *
+* the same for every element.  It needs a second copy of the range.           *
+*                                                                             *
+* inPlaceRadixSort is most significant byte first (American flag sort).       *
+* Each byte splits a range into 256 buckets by permuting along cycles, then   *
+* each bucket is sorted on the next byte.  Small buckets are heap sorted.     *
+* It needs no extra memory beyond the recursion, which is at most eight       *
+* deep, but is not stable.                                                    *
+*                                                                             *
+* Both cost O(n) per byte and touch memory in order, unlike heap sort.        *
+* ids[i] moves wherever array[i] moves; ids may be null.                      *
+******************************************************************************/
+    // buckets smaller than this are heap sorted by inPlaceRadixSort
+    static final int RADIX_CUTOFF = 64;
+
+    public static long sortableBits(double d) {
+	long bits = Double.doubleToRawLongBits(d);
+	return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+    public static void radixSort(PSTPoint[] array, long[] ids,
+				 int beginIndex, int endIndex) {
+	if(presorted(array,ids,beginIndex,endIndex)) return;
+	int n = 1+endIndex - beginIndex;
+	long[] keys = new long[n], keysTo = new long[n];
+	PSTPoint[] from = new PSTPoint[n], to = new PSTPoint[n];
+	long[] idsFrom = null, idsTo = null;
+	if(ids != null) {
+	    idsFrom = new long[n];
+	    idsTo = new long[n];
+	    System.arraycopy(ids,beginIndex,idsFrom,0,n);
+	}
+	System.arraycopy(array,beginIndex,from,0,n);
+	int[][] counts = new int[8][256];
+	for(int i = 0; i < n; i++) {
+	    long key = keys[i] = sortableBits(from[i].getX());
+	    for(int b = 0; b < 8; b++)
+		counts[b][(int)(key >>> (8*b)) & 0xff]++;
+	}
+	for(int b = 0; b < 8; b++) {
+	    int[] count = counts[b];
+	    if(count[(int)(keys[0] >>> (8*b)) & 0xff] == n) continue;
+	    int sum = 0;
+	    for(int d = 0; d < 256; d++) {
+		int c = count[d];
+		count[d] = sum;
+		sum += c;
+	    }
+	    for(int i = 0; i < n; i++) {
+		int j = count[(int)(keys[i] >>> (8*b)) & 0xff]++;
+		keysTo[j] = keys[i];
+		to[j] = from[i];
+		if(ids != null) idsTo[j] = idsFrom[i];
+	    }
+	    long[] tempKeys = keys; keys = keysTo; keysTo = tempKeys;
+	    PSTPoint[] temp = from; from = to; to = temp;
+	    long[] tempIds = idsFrom; idsFrom = idsTo; idsTo = tempIds;
+	}
+	System.arraycopy(from,0,array,beginIndex,n);
+	if(ids != null)
+	    System.arraycopy(idsFrom,0,ids,beginIndex,n);
+    }
+    public static void radixSort(double[] xs, double[] ys,
+				 int beginIndex, int endIndex) {
+	if(presorted(xs,ys,beginIndex,endIndex)) return;
+	int n = 1+endIndex - beginIndex;
+	long[] keys = new long[n], keysTo = new long[n];
+	double[] ysFrom = new double[n], ysTo = new double[n];
+	System.arraycopy(ys,beginIndex,ysFrom,0,n);
+	int[][] counts = new int[8][256];
+	for(int i = 0; i < n; i++) {
+	    long key = keys[i] = sortableBits(xs[beginIndex + i]);
+	    for(int b = 0; b < 8; b++)
+		counts[b][(int)(key >>> (8*b)) & 0xff]++;
+	}
+	for(int b = 0; b < 8; b++) {
+	    int[] count = counts[b];
+	    if(count[(int)(keys[0] >>> (8*b)) & 0xff] == n) continue;
+	    int sum = 0;
+	    for(int d = 0; d < 256; d++) {
+		int c = count[d];
+		count[d] = sum;
+		sum += c;
+	    }
+	    for(int i = 0; i < n; i++) {
+		int j = count[(int)(keys[i] >>> (8*b)) & 0xff]++;
+		keysTo[j] = keys[i];
+		ysTo[j] = ysFrom[i];
+	    }
+	    long[] tempKeys = keys; keys = keysTo; keysTo = tempKeys;
+	    double[] temp = ysFrom; ysFrom = ysTo; ysTo = temp;
+	}
+	// the keys map back to the exact bits of the xs
+	for(int i = 0; i < n; i++) {
+	    long key = keys[i];
+	    long bits = key ^ ((~key >> 63) | Long.MIN_VALUE);
+	    xs[beginIndex + i] = Double.longBitsToDouble(bits);
+	}
+	System.arraycopy(ysFrom,0,ys,beginIndex,n);
+    }
+    public static void inPlaceRadixSort(PSTPoint[] array, long[] ids,
+					int beginIndex, int endIndex) {
+	if(presorted(array,ids,beginIndex,endIndex)) return;
+	inPlaceRadixSort(array,ids,beginIndex,endIndex,56);
+    }
+    private static void inPlaceRadixSort(PSTPoint[] array, long[] ids,
+					 int beginIndex, int endIndex,
+					 int shift) {
+	if(1+endIndex - beginIndex < RADIX_CUTOFF) {
+	    heapSort(array,ids,beginIndex,endIndex);
+	    return;
+	}
+	int[] heads = new int[257], tails = new int[256];
+	for(int i = beginIndex; i <= endIndex; i++)
+	    heads[1+digit(array[i].getX(),shift)]++;
+	heads[0] = beginIndex;
+	for(int d = 1; d <= 256; d++)
+	    heads[d] += heads[d-1];
+	for(int d = 0; d < 256; d++)
+	    tails[d] = heads[d];
+	// heads[d] is now where bucket d begins; tails[d] is its first slot
+	// not yet holding a point of bucket d
+	for(int d = 0; d < 256; d++) {
+	    while(tails[d] < heads[d+1]) {
+		int i = tails[d];
+		int e = digit(array[i].getX(),shift);
+		while(e != d) {
+		    swap(array,ids,i,tails[e]++);
+		    e = digit(array[i].getX(),shift);
+		}
+		tails[d]++;
+	    }
+	}
+	if(shift == 0) return;
+	for(int d = 0; d < 256; d++)
+	    if(heads[d+1] - heads[d] > 1)
+		inPlaceRadixSort(array,ids,heads[d],heads[d+1]-1,shift-8);
+    }
+    public static void inPlaceRadixSort(double[] xs, double[] ys,
+					int beginIndex, int endIndex) {
+	if(presorted(xs,ys,beginIndex,endIndex)) return;
+	inPlaceRadixSort(xs,ys,beginIndex,endIndex,56);
+    }
+    private static void inPlaceRadixSort(double[] xs, double[] ys,
+					 int beginIndex, int endIndex,
+					 int shift) {
+	if(1+endIndex - beginIndex < RADIX_CUTOFF) {
+	    heapSort(xs,ys,beginIndex,endIndex);
+	    return;
+	}
+	int[] heads = new int[257], tails = new int[256];
+	for(int i = beginIndex; i <= endIndex; i++)
+	    heads[1+digit(xs[i],shift)]++;
+	heads[0] = beginIndex;
+	for(int d = 1; d <= 256; d++)
+	    heads[d] += heads[d-1];
+	for(int d = 0; d < 256; d++)
+	    tails[d] = heads[d];
+	for(int d = 0; d < 256; d++) {
+	    while(tails[d] < heads[d+1]) {
+		int i = tails[d];
+		int e = digit(xs[i],shift);
+		while(e != d) {
+		    swap(xs,ys,i,tails[e]++);
+		    e = digit(xs[i],shift);
+		}
+		tails[d]++;
+	    }
+	}
+	if(shift == 0) return;
+	for(int d = 0; d < 256; d++)
+	    if(heads[d+1] - heads[d] > 1)
+		inPlaceRadixSort(xs,ys,heads[d],heads[d+1]-1,shift-8);
+    }
+    private static int digit(double x, int shift) {
+	return (int)(sortableBits(x) >>> shift) & 0xff;
+    }
+/******************************************************************************
+* Parallel Quick Sort                                                         *
+*                                                                             *
+* Sorts by x in place on a ForkJoinPool.  After each partitioning step        *
+* the two sides are sorted concurrently; ranges of fewer than threshold       *
+* elements are heap sorted instead.  ids[i] moves wherever array[i]           *
+* moves; ids may be null.                                                     *
+******************************************************************************/
+    public static void parallelSort(PSTPoint[] array, long[] ids,
+				    int beginIndex, int endIndex,
+				    ForkJoinPool pool, int threshold) {
+	if(presorted(array,ids,beginIndex,endIndex)) return;
+	pool.invoke(new QuickSort(array,ids,beginIndex,endIndex,threshold));
+    }
+    private static class QuickSort extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private final PSTPoint[] array;
+	private final long[] ids;
+	private final int beginIndex, endIndex, threshold;
+	QuickSort(PSTPoint[] array, long[] ids, int beginIndex, int endIndex,
+		  int threshold) {
+	    this.array = array;
+	    this.ids = ids;
+	    this.beginIndex = beginIndex;
+	    this.endIndex = endIndex;
+	    this.threshold = threshold;
+	}
+	protected void compute() {
+	    if(1 + endIndex - beginIndex < Math.max(threshold,2)) {
+		heapSort(array,ids,beginIndex,endIndex);
+		return;
+	    }
+	    // median of three
+	    double a = array[beginIndex].getX();
+	    double b = array[(beginIndex + endIndex) >>> 1].getX();
+	    double c = array[endIndex].getX();
+	    double pivot = Math.max(Math.min(a,b),Math.min(Math.max(a,b),c));
+	    int i = beginIndex, j = endIndex;
+	    while(i <= j) {
+		while(array[i].getX() < pivot) i++;
+		while(array[j].getX() > pivot) j--;
+		if(i <= j) swap(array,ids,i++,j--);
+	    }
+	    invokeAll(new QuickSort(array,ids,beginIndex,j,threshold),
+		      new QuickSort(array,ids,i,endIndex,threshold));
+	}
+    }
+/******************************************************************************
+* Presorted input                                                             *
+*                                                                             *
+* Points often arrive already in x order (e.g. events by time), or in         *
+* reverse x order.  Every sort above first checks for this in one pass        *
+* and, if so, only reverses the range when needed, so such input costs        *
+* O(n) instead of O(n log n).  The check stops at the first pair out of       *
+* order, so on unsorted input it costs next to nothing.                       *
+*                                                                             *
+* Returns true if the range is now sorted.                                    *
+******************************************************************************/
+    private static boolean presorted(PSTPoint[] array, long[] ids,
+				     int beginIndex, int endIndex) {
+	int i = beginIndex;
+	while(i < endIndex && !array[i].xGreaterThan(array[i+1])) i++;
+	if(i >= endIndex) return true;
+	if(i > beginIndex) return false;
+	while(i < endIndex && array[i].xGreaterThan(array[i+1])) i++;
+	if(i < endIndex) return false;
+	for(i = beginIndex; i < endIndex; i++, endIndex--)
+	    swap(array,ids,i,endIndex);
+	return true;
+    }
+    private static boolean presorted(double[] xs, double[] ys,
+				     int beginIndex, int endIndex) {
+	int i = beginIndex;
+	while(i < endIndex && xs[i] <= xs[i+1]) i++;
+	if(i >= endIndex) return true;
+	if(i > beginIndex) return false;
+	while(i < endIndex && xs[i] > xs[i+1]) i++;
+	if(i < endIndex) return false;
+	for(i = beginIndex; i < endIndex; i++, endIndex--)
+	    swap(xs,ys,i,endIndex);
+	return true;
+    }
+    private static boolean presorted(int[] xs, int[] ys,
+				     int beginIndex, int endIndex) {
+	int i = beginIndex;
+	while(i < endIndex && xs[i] <= xs[i+1]) i++;
+	if(i >= endIndex) return true;
+	if(i > beginIndex) return false;
+	while(i < endIndex && xs[i] > xs[i+1]) i++;
+	if(i < endIndex) return false;
+	for(i = beginIndex; i < endIndex; i++, endIndex--)
+	    swap(xs,ys,i,endIndex);
+	return true;
+    }
+    private static boolean presorted(long[] xs, long[] ys,
+				     int beginIndex, int endIndex) {
+	int i = beginIndex;
+	while(i < endIndex && xs[i] <= xs[i+1]) i++;
+	if(i >= endIndex) return true;
+	if(i > beginIndex) return false;
+	while(i < endIndex && xs[i] > xs[i+1]) i++;
+	if(i < endIndex) return false;
+	for(i = beginIndex; i < endIndex; i++, endIndex--)
+	    swap(xs,ys,i,endIndex);
+	return true;
+    }
+    private static boolean presorted(float[] xs, float[] ys,
+				     int beginIndex, int endIndex) {
+	int i = beginIndex;
+	while(i < endIndex && xs[i] <= xs[i+1]) i++;
+	if(i >= endIndex) return true;
+	if(i > beginIndex) return false;
+	while(i < endIndex && xs[i] > xs[i+1]) i++;
+	if(i < endIndex) return false;
+	for(i = beginIndex; i < endIndex; i++, endIndex--)
+	    swap(xs,ys,i,endIndex);
+	return true;
+    }
+/******************************************************************************
 * Testing                                                                     *
 ******************************************************************************/
     public static void main(String[] args) {
@@ -148,6 +601,11 @@ public class Sort {
 	if((n*2) < 7) {
 	    System.out.print("After: "); printArray(copyPoints);
 	}
+	System.out.println("HEAP SORT ON SORTED ARRAY");
+	sw = new StopWatch();
+	heapSort(copyPoints);
+	time = sw.stop();
+	System.out.println("Took: " + time);
 	System.out.println("HEAP SORT ON ARRAY FROM " + n + " TO " + (2*n-1));
 	copyPoints = testPoints.toArray(new PSTPoint[2*n]);
 	if((n*2) < 7) {
@@ -160,6 +618,43 @@ public class Sort {
 	if((n*2) < 7) {
 	    System.out.print("After: "); printArray(copyPoints);
 	}
+	benchmarkRadixSort(2*n);
+    }
+    // Compares heap sort and the radix sorts on n random points
+    private static void benchmarkRadixSort(int n) {
+	Random random = new Random(0);
+	PSTPoint[] points = new PSTPoint[n];
+	double[] xs = new double[n], ys = new double[n];
+	for(int i = 0; i < n; i++) {
+	    xs[i] = random.nextDouble() - 0.5;
+	    ys[i] = random.nextDouble();
+	    points[i] = new PSTPoint(xs[i],ys[i]);
+	}
+	System.out.println("RADIX SORT ON " + n + " RANDOM POINTS");
+	PSTPoint[] copyPoints = points.clone();
+	StopWatch sw = new StopWatch();
+	heapSort(copyPoints);
+	System.out.println("heapSort(PSTPoint[]):        " + sw.stop());
+	copyPoints = points.clone();
+	sw = new StopWatch();
+	radixSort(copyPoints,null,0,n-1);
+	System.out.println("radixSort(PSTPoint[]):       " + sw.stop());
+	copyPoints = points.clone();
+	sw = new StopWatch();
+	inPlaceRadixSort(copyPoints,null,0,n-1);
+	System.out.println("inPlaceRadixSort(PSTPoint[]):" + sw.stop());
+	double[] copyXs = xs.clone(), copyYs = ys.clone();
+	sw = new StopWatch();
+	heapSort(copyXs,copyYs);
+	System.out.println("heapSort(double[]):          " + sw.stop());
+	copyXs = xs.clone(); copyYs = ys.clone();
+	sw = new StopWatch();
+	radixSort(copyXs,copyYs,0,n-1);
+	System.out.println("radixSort(double[]):         " + sw.stop());
+	copyXs = xs.clone(); copyYs = ys.clone();
+	sw = new StopWatch();
+	inPlaceRadixSort(copyXs,copyYs,0,n-1);
+	System.out.println("inPlaceRadixSort(double[]):  " + sw.stop());
     }
 /******************************************************************************
 * Utility                                                                     *
@@ -168,9 +663,46 @@ public class Sort {
 	for(int i = 0; i < points.length; i++) System.out.print(points[i] + " ");
 	System.out.println();
     }
-    private static void swap(PSTPoint[] array,int a, int b) {
+    private static void swap(PSTPoint[] array, long[] ids, int a, int b) {
 	PSTPoint temp = array[a];
 	array[a] = array[b];
 	array[b] = temp;
+	if(ids != null) {
+	    long id = ids[a];
+	    ids[a] = ids[b];
+	    ids[b] = id;
+	}
+    }
+    private static void swap(double[] xs, double[] ys, int a, int b) {
+	double temp = xs[a];
+	xs[a] = xs[b];
+	xs[b] = temp;
+	temp = ys[a];
+	ys[a] = ys[b];
+	ys[b] = temp;
+    }
+    private static void swap(int[] xs, int[] ys, int a, int b) {
+	int temp = xs[a];
+	xs[a] = xs[b];
+	xs[b] = temp;
+	temp = ys[a];
+	ys[a] = ys[b];
+	ys[b] = temp;
+    }
+    private static void swap(long[] xs, long[] ys, int a, int b) {
+	long temp = xs[a];
+	xs[a] = xs[b];
+	xs[b] = temp;
+	temp = ys[a];
+	ys[a] = ys[b];
+	ys[b] = temp;
+    }
+    private static void swap(float[] xs, float[] ys, int a, int b) {
+	float temp = xs[a];
+	xs[a] = xs[b];
+	xs[b] = temp;
+	temp = ys[a];
+	ys[a] = ys[b];
+	ys[b] = temp;
     }
 }
\ No newline at end of file
@@ -4,7 +4,7 @@ public class TestPST {
 	throws EmptyTreeException, NoPointsInRangeException, NotImplementedException {
 	StopWatch sw;
 	long time;
-	PrioritySearchTree arrayPST, pointerPST, inPlacePST;
+	PrioritySearchTree arrayPST, pointerPST, inPlacePST, primitivePST;
 	System.out.println("Creating points...");
 	ArrayList<PSTPoint> testPoints = new ArrayList<PSTPoint>();
 	int n = Integer.parseInt(args[0]);
@@ -22,26 +22,34 @@ public class TestPST {
 	pointerPST = new PointerPST(testPoints);
 	time = sw.stop();
 	System.out.println("Pointer implementation took: " + time);
-	// sw = new StopWatch();
-	// arrayPST = new ArrayPST(copyPoints);
-	// time = sw.stop();
-	// System.out.println("Array implementation took: " + time);
+	sw = new StopWatch();
+	arrayPST = new ArrayPST(copyPoints);
+	time = sw.stop();
+	System.out.println("Array implementation took: " + time);
 	sw = new StopWatch();
 	inPlacePST = new InPlacePST(pointArray);
 	time = sw.stop();
 	System.out.println("In-place implementation took: " + time);
+	sw = new StopWatch();
+	primitivePST = new PrimitiveInPlacePST(pointArray);
+	time = sw.stop();
+	System.out.println("Primitive in-place implementation took: " + time);
 	System.out.println();
 
 	System.out.println("Testing pointer impementation...");
 	testTime(pointerPST,n);
 	System.out.println();
 
-	// System.out.println("Testing array impementation...");
-	// testTime(arrayPST,n);
-	// System.out.println();
+	System.out.println("Testing array impementation...");
+	testTime(arrayPST,n);
+	System.out.println();
 
 	System.out.println("Testing in-place impementation...");
 	testTime(inPlacePST,n);
+	System.out.println();
+
+	System.out.println("Testing primitive in-place impementation...");
+	testTime(primitivePST,n);
     } 
     private static void testTime(PrioritySearchTree pst, int n)
 	throws EmptyTreeException, NoPointsInRangeException, NotImplementedException {
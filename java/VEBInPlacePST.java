@@ -0,0 +1,343 @@
+/******************************************************************************
+*                       Copyright (c) 2011 - 2012 by                          *
+*                               Simon Pratt                                   *
+*                         (All rights reserved)                               *
+*******************************************************************************
+*                                                                             *
+* FILE:    VEBInPlacePST.java                                                 *
+*                                                                             *
+* MODULE:  Priority Search Tree                                               *
+*                                                                             *
+* NOTES:   The in-place PST, with its nodes stored in van Emde Boas order     *
+*          instead of breadth first order.  A tree of height H is cut at      *
+*          height H/2; the top tree is laid out first, followed by each       *
+*          of the bottom trees from left to right, each laid out the same     *
+*          way recursively.  A root to leaf path then touches O(log_B n)      *
+*          blocks of size B, whatever B is, where the breadth first order     *
+*          touches O(log n) of them.                                          *
+*                                                                             *
+*          Nodes are still named by their base 1 breadth first index;         *
+*          position() maps such an index to where the node is stored.  The    *
+*          queries avoid it by carrying the positions of the ancestors down   *
+*          the search, see childPosition().  Only the complete levels are     *
+*          laid out recursively.  The last, partly filled level follows them  *
+*          in breadth first order, so the array holds exactly n points and no *
+*          holes.  Both coordinates of a node are stored side by side, so     *
+*          that a node costs one cache line.                                  *
+*                                                                             *
+******************************************************************************/
+
+import java.util.*;
+
+public class VEBInPlacePST extends AbstractInPlacePST {
+    // Note: base 0, the node with base 1 index i has its x-coordinate at
+    // nodes[2*position(i)] and its y-coordinate right after it
+    double[] nodes;
+    // number of complete levels, laid out in van Emde Boas order
+    private final int height;
+    // indexed by depth, see buildTables
+    private int[] topDepth, topSize, bottomSize;
+
+    public VEBInPlacePST(PSTPoint[] points) {
+	this(new PrimitiveInPlacePST(points));
+    }
+    // Lays out a tree which has already been built in breadth first order
+    public VEBInPlacePST(AbstractInPlacePST tree) {
+	int n = tree.size();
+	nodes = new double[2*n];
+	height = n < 1 ? 0 : level(n+1);
+	buildTables();
+	for(int i = 1; i <= n; i++) {
+	    nodes[2*position(i)] = tree.getX(i);
+	    nodes[2*position(i)+1] = tree.getY(i);
+	}
+    }
+
+/******************************************************************************
+* Navigation                                                                  *
+******************************************************************************/
+    // Where the node with base 1 breadth first index lives (base 0)
+    int position(int index) {
+	int d = level(index);
+	if(d >= height) // in the partly filled last level
+	    return (powerOf2(height) - 1) + (index - powerOf2(height));
+	// climb from bottom tree root to bottom tree root, see buildTables
+	int position = 0;
+	while(d > 0) {
+	    int up = d - topDepth[d];
+	    int ancestor = index >> up;
+	    position += topSize[d] + (index - (ancestor << up))*bottomSize[d];
+	    index = ancestor;
+	    d = topDepth[d];
+	}
+	return position;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: buildTables                                                  *
+*                                                                             *
+* PURPOSE:       For each depth d > 0 of the complete levels, finds the       *
+*                recursive cut which makes the nodes at depth d roots of      *
+*                bottom trees, and records:                                   *
+*                                                                             *
+*                  topDepth[d]:   depth of the root of the cut tree           *
+*                  topSize[d]:    number of nodes in its top tree             *
+*                  bottomSize[d]: number of nodes in each bottom tree         *
+*                                                                             *
+*                A node at depth d is then stored topSize[d] +                *
+*                k*bottomSize[d] after the root of the cut tree, where k      *
+*                counts the nodes to its left at depth d within the cut       *
+*                tree.  (Brodal, Fagerberg, Jacob, 2002.)                     *
+*                                                                             *
+******************************************************************************/
+    private void buildTables() {
+	topDepth = new int[Math.max(height,1)];
+	topSize = new int[Math.max(height,1)];
+	bottomSize = new int[Math.max(height,1)];
+	buildTables(0,height);
+    }
+    private void buildTables(int rootDepth, int height) {
+	if(height <= 1) return;
+	int top = height/2;
+	int bottom = height - top;
+	topDepth[rootDepth + top] = rootDepth;
+	topSize[rootDepth + top] = powerOf2(top) - 1;
+	bottomSize[rootDepth + top] = powerOf2(bottom) - 1;
+	buildTables(rootDepth,top);
+	buildTables(rootDepth + top,bottom);
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: vebPosition                                                  *
+*                                                                             *
+* PURPOSE:       Gives the base 0 position of a node in the van Emde Boas     *
+*                layout of a complete tree.                                   *
+*                                                                             *
+* PARAMETERS                                                                  *
+*   Type/Name:   int/index                                                    *
+*   Description: The base 1 breadth first index of the node.                  *
+*                                                                             *
+*   Type/Name:   int/height                                                   *
+*   Description: The number of levels in the complete tree.                   *
+*                                                                             *
+* NOTES:         Each step descends into the top or one of the bottom         *
+*                trees, halving the height, so this takes O(log log n).       *
+*                position() gets the same answer from precomputed tables;     *
+*                this is the plain definition of the layout, which main()     *
+*                checks the tables against.                                   *
+*                                                                             *
+******************************************************************************/
+    static int vebPosition(int index, int height) {
+	int position = 0;
+	while(height > 1) {
+	    int d = level(index);
+	    int top = height/2;
+	    int bottom = height - top;
+	    if(d < top) {
+		height = top;
+	    } else {
+		// the ancestor of index at depth top roots its bottom tree
+		int depthInBottom = d - top;
+		int bottomTree = (index >> depthInBottom) - powerOf2(top);
+		position += (powerOf2(top) - 1)
+		    + bottomTree*(powerOf2(bottom) - 1);
+		// re-index within the bottom tree
+		index = powerOf2(depthInBottom)
+		    | (index & (powerOf2(depthInBottom) - 1));
+		height = bottom;
+	    }
+	}
+	return position;
+    }
+
+    // Where the node with base 1 index index at depth d lives, given the
+    // positions path[] of its ancestors.  O(1), unlike position(index).
+    private int childPosition(int index, int d, int[] path) {
+	if(d >= height)
+	    return (powerOf2(height) - 1) + (index - powerOf2(height));
+	int up = d - topDepth[d];
+	return path[topDepth[d]] + topSize[d]
+	    + (index - ((index >> up) << up))*bottomSize[d];
+    }
+    // A neighbour on the same level which shares the node's ancestor at
+    // topDepth[d] roots the next bottom tree over, bottomSize[d] away.
+    // Returns -1 for any other neighbour; in particular a node's sibling
+    // is always found.
+    private int leftNeighbourPosition(int index, int d, int position) {
+	if(d >= height) return position - 1;
+	int up = d - topDepth[d];
+	if(((index-1) >> up) == (index >> up))
+	    return position - bottomSize[d];
+	return -1;
+    }
+    private int rightNeighbourPosition(int index, int d, int position) {
+	if(d >= height) return position + 1;
+	int up = d - topDepth[d];
+	if(((index+1) >> up) == (index >> up))
+	    return position + bottomSize[d];
+	return -1;
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: highestIndex3Sided                                           *
+*                                                                             *
+* PURPOSE:       As in AbstractInPlacePST, but the positions of the           *
+*                ancestors are carried down the search, so that each node     *
+*                visited is found in O(1) instead of by position().           *
+*                                                                             *
+******************************************************************************/
+    // State of one search: positions of the current path, by depth, and
+    // the best node found so far.
+    private static class Search {
+	final int[] path;
+	int best;
+	double bestY;
+	Search(int height) {
+	    path = new int[height+1];
+	}
+    }
+    public int highestIndex3Sided(double xmin, double xmax, double ymin) {
+	if(size() < 1) return 0;
+	Search search = new Search(height);
+	highest3Sided(1,0,xmin,xmax,ymin,search);
+	return search.best;
+    }
+    private void highest3Sided(int index, int d, double xmin, double xmax,
+			       double ymin, Search search) {
+	int position = d == 0 ? 0 : childPosition(index,d,search.path);
+	double y = nodes[2*position+1];
+	// nothing in this subtree is higher than its root
+	if(y < ymin || (search.best != 0 && y <= search.bestY))
+	    return;
+	if(!mayIntersect(index,d,position,xmin,xmax)) return;
+	double x = nodes[2*position];
+	if(xmin <= x && x <= xmax) {
+	    search.best = index;
+	    search.bestY = y;
+	    return;
+	}
+	if(d < height) search.path[d] = position;
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= size())
+	    highest3Sided(indexL,d+1,xmin,xmax,ymin,search);
+	if(indexL+1 <= size())
+	    highest3Sided(indexL+1,d+1,xmin,xmax,ymin,search);
+    }
+
+/******************************************************************************
+*                                                                             *
+* FUNCTION NAME: enumerate3Sided                                              *
+*                                                                             *
+* PURPOSE:       As in AbstractInPlacePST, carrying positions down as in      *
+*                highestIndex3Sided.                                          *
+*                                                                             *
+******************************************************************************/
+    public List<PSTPoint> enumerate3Sided(double xmin, double xmax, double ymin) {
+	ArrayList<PSTPoint> points = new ArrayList<PSTPoint>();
+	if(size() > 0)
+	    enumerate3Sided(1,0,xmin,xmax,ymin,new int[height+1],points);
+	return points;
+    }
+    private void enumerate3Sided(int index, int d, double xmin, double xmax,
+				 double ymin, int[] path,
+				 ArrayList<PSTPoint> points) {
+	int position = d == 0 ? 0 : childPosition(index,d,path);
+	if(nodes[2*position+1] < ymin) return;
+	if(!mayIntersect(index,d,position,xmin,xmax)) return;
+	double x = nodes[2*position];
+	if(xmin <= x && x <= xmax)
+	    points.add(new PSTPoint(x,nodes[2*position+1]));
+	if(d < height) path[d] = position;
+	int indexL = indexOfLeftChild(index);
+	if(indexL <= size())
+	    enumerate3Sided(indexL,d+1,xmin,xmax,ymin,path,points);
+	if(indexL+1 <= size())
+	    enumerate3Sided(indexL+1,d+1,xmin,xmax,ymin,path,points);
+    }
+
+    // mayIntersect from AbstractInPlacePST, but only reading neighbours
+    // whose position is known in O(1).  Skipping the others just prunes
+    // less, since the sibling is always checked.
+    private boolean mayIntersect(int index, int d, int position,
+				 double xmin, double xmax) {
+	int first = powerOf2(d);
+	if(index > first) {
+	    int left = leftNeighbourPosition(index,d,position);
+	    if(left >= 0 && nodes[2*left] > xmax) return false;
+	}
+	if(index+1 < 2*first && index+1 <= size()) {
+	    int right = rightNeighbourPosition(index,d,position);
+	    if(right >= 0 && nodes[2*right] < xmin) return false;
+	}
+	return true;
+    }
+
+/******************************************************************************
+* Storage                                                                     *
+******************************************************************************/
+    public int size() {
+	return nodes.length/2;
+    }
+    protected double getX(int index) { // base 1
+	return nodes[2*position(index)];
+    }
+    protected double getY(int index) { // base 1
+	return nodes[2*position(index)+1];
+    }
+    protected void swap(int i, int j) { // base 1
+	int a = position(i), b = position(j);
+	double temp = nodes[2*a];
+	nodes[2*a] = nodes[2*b];
+	nodes[2*b] = temp;
+	temp = nodes[2*a+1];
+	nodes[2*a+1] = nodes[2*b+1];
+	nodes[2*b+1] = temp;
+    }
+
+/******************************************************************************
+* Testing                                                                     *
+******************************************************************************/
+    public static void main(String[] args) {
+	int n = 15;
+	if(args.length > 0) n = Integer.parseInt(args[0]);
+	System.out.println("Creating points...");
+	PSTPoint[] testPoints = new PSTPoint[n];
+	for(int i = 0; i < n ; i++)
+	    testPoints[i] = new PSTPoint(i,n-i);
+	System.out.println("Building PST with " + n + " nodes...");
+	StopWatch sw = new StopWatch();
+	PrimitiveInPlacePST bfs = new PrimitiveInPlacePST(testPoints);
+	long time = sw.stop();
+	System.out.println("Breadth first build took: " + time);
+	sw = new StopWatch();
+	VEBInPlacePST veb = new VEBInPlacePST(bfs);
+	time = sw.stop();
+	System.out.println("Van Emde Boas layout took: " + time);
+	if(n < 20) {
+	    System.out.print("PST: "); veb.printArray();
+	}
+	for(int i = 1; i < powerOf2(veb.height); i++)
+	    if(veb.position(i) != vebPosition(i,veb.height))
+		System.out.println("position(" + i + ") is " + veb.position(i)
+				   + ", expected " + vebPosition(i,veb.height));
+	int queries = 1000000;
+	java.util.Random random = new java.util.Random(0);
+	AbstractInPlacePST[] trees = { bfs, veb };
+	String[] names = { "breadth first", "van Emde Boas" };
+	for(int t = 0; t < trees.length; t++) {
+	    random.setSeed(0);
+	    double sum = 0;
+	    sw = new StopWatch();
+	    for(int q = 0; q < queries; q++) {
+		double x = random.nextInt(n);
+		sum += trees[t].highest3Sided(x,x,0).getY();
+	    }
+	    time = sw.stop();
+	    System.out.println(queries + " point queries, " + names[t]
+			       + " took: " + time + " (" + sum + ")");
+	}
+    }
+}